@@ -0,0 +1,48 @@
+package co.caio.cerberus.batch;
+
+import java.time.Duration;
+
+public final class IngestionStats {
+
+  private final long lines;
+  private final long recipes;
+  private final long errors;
+  private final Duration elapsed;
+
+  IngestionStats(long lines, long recipes, long errors, Duration elapsed) {
+    this.lines = lines;
+    this.recipes = recipes;
+    this.errors = errors;
+    this.elapsed = elapsed;
+  }
+
+  public long lines() {
+    return lines;
+  }
+
+  // Sent to both the index and the database
+  public long recipes() {
+    return recipes;
+  }
+
+  // Lines that were skipped for not being a valid recipe
+  public long errors() {
+    return errors;
+  }
+
+  public Duration elapsed() {
+    return elapsed;
+  }
+
+  public double recipesPerSecond() {
+    var nanos = elapsed.toNanos();
+    return nanos == 0 ? 0 : recipes * 1e9 / nanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "IngestionStats{lines=%d, recipes=%d, errors=%d, elapsed=%s, recipesPerSecond=%.1f}",
+        lines, recipes, errors, elapsed, recipesPerSecond());
+  }
+}
@@ -0,0 +1,162 @@
+package co.caio.cerberus.batch;
+
+import co.caio.cerberus.db.RecipeMetadata;
+import co.caio.cerberus.db.SimpleRecipeMetadataDatabase;
+import co.caio.cerberus.model.Recipe;
+import co.caio.cerberus.search.Indexer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Objects;
+
+// Reads recipes from JSON lines and sends each one to both an Indexer
+// and a metadata database writer in a single pass.
+// Lines are parsed as they're read and the indexer only pulls more of
+// them while its workers keep up (see Indexer.addRecipes), so memory
+// use doesn't grow with the input. Lines that aren't valid recipes are
+// reported and skipped. Committing and closing the indexer and the
+// writer is left to the caller
+public class RecipeIngestion {
+
+  private static final ObjectReader recipeReader =
+      new ObjectMapper().registerModule(new Jdk8Module()).readerFor(Recipe.class);
+
+  private final Indexer indexer;
+  private final SimpleRecipeMetadataDatabase.Writer database;
+  private final int parallelism;
+  private final int progressInterval;
+  private final Listener listener;
+
+  private RecipeIngestion(Builder builder) {
+    indexer = builder.indexer;
+    database = builder.database;
+    parallelism = builder.parallelism;
+    progressInterval = builder.progressInterval;
+    listener = builder.listener;
+  }
+
+  public IngestionStats run(InputStream jsonLines) {
+    var progress = new Progress();
+    var reader = new BufferedReader(new InputStreamReader(jsonLines, StandardCharsets.UTF_8));
+
+    // Everything but building the documents happens on this thread, as
+    // addRecipes() pulls from the stream
+    try (var lines = reader.lines()) {
+      indexer.addRecipes(
+          lines
+              .map(progress::parse)
+              .filter(Objects::nonNull)
+              .peek(
+                  recipe -> {
+                    database.addRecipe(RecipeMetadata.fromRecipe(recipe));
+                    progress.recipes++;
+                  }),
+          parallelism);
+    } catch (IOException | UncheckedIOException wrapped) {
+      throw new RecipeIngestionException(wrapped);
+    }
+
+    var stats = progress.stats();
+    listener.onProgress(stats);
+    return stats;
+  }
+
+  // Only touched by the thread calling run()
+  private class Progress {
+    private final long startNanos = System.nanoTime();
+    private long lines;
+    private long recipes;
+    private long errors;
+
+    Recipe parse(String line) {
+      lines++;
+      if (lines % progressInterval == 0) {
+        listener.onProgress(stats());
+      }
+
+      if (line.isBlank()) {
+        return null;
+      }
+
+      try {
+        return recipeReader.readValue(line);
+      } catch (IOException e) {
+        errors++;
+        listener.onError(lines, e);
+        return null;
+      }
+    }
+
+    IngestionStats stats() {
+      return new IngestionStats(
+          lines, recipes, errors, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+  }
+
+  public interface Listener {
+    // Called after every `interval` lines and once when done
+    default void onProgress(IngestionStats stats) {}
+
+    // The line is skipped, ingestion goes on
+    default void onError(long lineNumber, Exception error) {}
+  }
+
+  public static class Builder {
+    private Indexer indexer;
+    private SimpleRecipeMetadataDatabase.Writer database;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int progressInterval = 10_000;
+    private Listener listener = new Listener() {};
+
+    public Builder indexer(Indexer indexer) {
+      this.indexer = indexer;
+      return this;
+    }
+
+    public Builder database(SimpleRecipeMetadataDatabase.Writer writer) {
+      database = writer;
+      return this;
+    }
+
+    // Threads building index documents
+    public Builder parallelism(int numThreads) {
+      if (numThreads < 1) {
+        throw new IllegalStateException("parallelism must be >= 1");
+      }
+      parallelism = numThreads;
+      return this;
+    }
+
+    public Builder listener(int interval, Listener listener) {
+      if (interval < 1) {
+        throw new IllegalStateException("Progress interval must be >= 1");
+      }
+      progressInterval = interval;
+      this.listener = listener;
+      return this;
+    }
+
+    public RecipeIngestion build() {
+      if (indexer == null) {
+        throw new IllegalStateException("indexer is required");
+      }
+      if (database == null) {
+        throw new IllegalStateException("database is required");
+      }
+      return new RecipeIngestion(this);
+    }
+  }
+
+  public static class RecipeIngestionException extends RuntimeException {
+    RecipeIngestionException(Exception e) {
+      super(e);
+    }
+  }
+}
@@ -0,0 +1,322 @@
+package co.caio.cerberus.batch;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+import co.caio.cerberus.db.RecipeMetadata;
+import co.caio.cerberus.db.SimpleRecipeMetadataDatabase;
+import co.caio.cerberus.model.Recipe;
+import co.caio.cerberus.search.Searcher;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Computes the similar recipes of a whole corpus ahead of time, so that
+// serving them is a RecipeMetadata.getSimilarRecipeIds() lookup instead
+// of a findSimilar() call.
+// The index doesn't keep the recipe text, so the recipes the index was
+// built from have to be given again. Finished recipes are appended to a
+// checkpoint file as they complete: running the job again with the same
+// checkpoint only computes what's missing.
+public class SimilarRecipesJob {
+
+  private final Searcher searcher;
+  private final Path checkpoint;
+  private final int maxSimilar;
+  private final int parallelism;
+  private final int progressInterval;
+  private final ProgressListener progressListener;
+
+  private SimilarRecipesJob(Builder builder) {
+    searcher = builder.searcher;
+    checkpoint = builder.checkpoint;
+    maxSimilar = builder.maxSimilar;
+    parallelism = builder.parallelism;
+    progressInterval = builder.progressInterval;
+    progressListener = builder.progressListener;
+  }
+
+  // Writes every recipe from `recipes`, with its similar recipe ids, to
+  // a new database at databaseDir. The supplier is called twice (once to
+  // compute, once to write) and must yield the same recipes both times
+  public void run(Supplier<Stream<Recipe>> recipes, Path databaseDir) {
+    if (Files.exists(databaseDir)) {
+      throw new SimilarRecipesJobException("Database already exists at given path");
+    }
+
+    try {
+      computeMissing(recipes, readCheckpoint().keySet());
+      writeDatabase(recipes, readCheckpoint(), databaseDir);
+    } catch (IOException wrapped) {
+      throw new SimilarRecipesJobException(wrapped);
+    } catch (InterruptedException wrapped) {
+      Thread.currentThread().interrupt();
+      throw new SimilarRecipesJobException(wrapped);
+    }
+  }
+
+  private void computeMissing(Supplier<Stream<Recipe>> recipes, Set<Long> done)
+      throws IOException, InterruptedException {
+    final int total = searcher.numDocs();
+
+    var executor =
+        Executors.newFixedThreadPool(
+            parallelism,
+            runnable -> {
+              var thread = new Thread(runnable, "cerberus-similar-recipes");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    // Keeps the queue short so that we don't read the whole corpus into
+    // memory while the workers catch up
+    var slots = new Semaphore(parallelism * 4);
+    var failure = new AtomicReference<Exception>();
+    var progress = new int[] {done.size()};
+
+    try (var writer = Files.newBufferedWriter(checkpoint, StandardCharsets.UTF_8, CREATE, APPEND);
+        var stream = recipes.get()) {
+
+      // Whatever a crash cut short stays on a line of its own
+      if (Files.size(checkpoint) > 0 && !endsWithNewline(checkpoint)) {
+        writer.newLine();
+      }
+
+      var iterator = stream.iterator();
+      while (iterator.hasNext() && failure.get() == null) {
+        var recipe = iterator.next();
+        if (done.contains(recipe.recipeId())) {
+          continue;
+        }
+
+        slots.acquire();
+        executor.execute(
+            () -> {
+              try {
+                var similar = findSimilar(recipe);
+                synchronized (writer) {
+                  writeEntry(writer, recipe.recipeId(), similar);
+                  if (++progress[0] % progressInterval == 0) {
+                    // Everything reported is safely in the checkpoint
+                    writer.flush();
+                    progressListener.onProgress(progress[0], total);
+                  }
+                }
+              } catch (Exception e) {
+                failure.compareAndSet(null, e);
+              } finally {
+                slots.release();
+              }
+            });
+      }
+
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+      synchronized (writer) {
+        writer.flush();
+        progressListener.onProgress(progress[0], total);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    if (failure.get() != null) {
+      throw new SimilarRecipesJobException(failure.get());
+    }
+  }
+
+  private List<Long> findSimilar(Recipe recipe) {
+    // One extra since the recipe itself is usually the best match
+    return searcher.findSimilar(recipeText(recipe), maxSimilar + 1).recipeIds().stream()
+        .filter(id -> id != recipe.recipeId())
+        .limit(maxSimilar)
+        .collect(Collectors.toList());
+  }
+
+  // Same content as IndexField.FULL_RECIPE
+  static String recipeText(Recipe recipe) {
+    return String.join(
+        "\n",
+        recipe.name(),
+        String.join("\n", recipe.instructions()),
+        String.join("\n", recipe.ingredients()));
+  }
+
+  private void writeDatabase(
+      Supplier<Stream<Recipe>> recipes, Map<Long, List<Long>> similar, Path databaseDir)
+      throws IOException {
+    // Written elsewhere and moved in place when complete: an interrupted
+    // run never leaves a partial database behind
+    var tmpDir = databaseDir.resolveSibling(databaseDir.getFileName() + ".tmp");
+    if (Files.exists(tmpDir)) {
+      try (var files = Files.list(tmpDir)) {
+        for (var file : files.collect(Collectors.toList())) {
+          Files.delete(file);
+        }
+      }
+    }
+
+    var writer = new SimpleRecipeMetadataDatabase.Writer(tmpDir);
+    try (var stream = recipes.get()) {
+      stream.forEach(
+          recipe ->
+              writer.addRecipe(
+                  RecipeMetadata.fromRecipe(
+                      new Recipe.Builder()
+                          .from(recipe)
+                          .similarRecipeIds(similar.getOrDefault(recipe.recipeId(), List.of()))
+                          .build())));
+    } finally {
+      writer.close();
+    }
+
+    Files.move(tmpDir, databaseDir, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // One line per recipe: its id, a tab, the comma separated similar ids
+  // and a terminating semicolon. A crash may leave the last line cut
+  // short, so lines without the terminator are ignored and their
+  // recipes computed again
+  private Map<Long, List<Long>> readCheckpoint() throws IOException {
+    var similar = new HashMap<Long, List<Long>>();
+
+    if (!Files.exists(checkpoint)) {
+      return similar;
+    }
+
+    try (var lines = Files.lines(checkpoint, StandardCharsets.UTF_8)) {
+      lines.forEach(
+          line -> {
+            if (!line.endsWith(";")) {
+              return;
+            }
+
+            var parts = line.substring(0, line.length() - 1).split("\t", -1);
+            if (parts.length != 2) {
+              return;
+            }
+
+            try {
+              var ids = new ArrayList<Long>();
+              if (!parts[1].isEmpty()) {
+                for (var id : parts[1].split(",")) {
+                  ids.add(Long.parseLong(id));
+                }
+              }
+              similar.put(Long.parseLong(parts[0]), ids);
+            } catch (NumberFormatException ignored) {
+              // Not something we wrote
+            }
+          });
+    }
+
+    return similar;
+  }
+
+  private static boolean endsWithNewline(Path file) throws IOException {
+    try (var channel = FileChannel.open(file)) {
+      var last = ByteBuffer.allocate(1);
+      channel.read(last, channel.size() - 1);
+      return last.get(0) == '\n';
+    }
+  }
+
+  private static void writeEntry(BufferedWriter writer, long recipeId, List<Long> similar)
+      throws IOException {
+    writer.write(Long.toString(recipeId));
+    writer.write('\t');
+    writer.write(similar.stream().map(String::valueOf).collect(Collectors.joining(",")));
+    writer.write(';');
+    writer.newLine();
+  }
+
+  @FunctionalInterface
+  public interface ProgressListener {
+    // Called from the worker threads, one call at a time
+    void onProgress(int processed, int total);
+  }
+
+  public static class Builder {
+    private Searcher searcher;
+    private Path checkpoint;
+    private int maxSimilar = 10;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int progressInterval = 1000;
+    private ProgressListener progressListener = (processed, total) -> {};
+
+    public Builder searcher(Searcher searcher) {
+      this.searcher = searcher;
+      return this;
+    }
+
+    public Builder checkpoint(Path file) {
+      checkpoint = file;
+      return this;
+    }
+
+    public Builder maxSimilar(int maxSimilar) {
+      if (maxSimilar < 1) {
+        throw new IllegalStateException("maxSimilar must be >= 1");
+      }
+      this.maxSimilar = maxSimilar;
+      return this;
+    }
+
+    public Builder parallelism(int numThreads) {
+      if (numThreads < 1) {
+        throw new IllegalStateException("parallelism must be >= 1");
+      }
+      parallelism = numThreads;
+      return this;
+    }
+
+    // The listener is called after every `interval` recipes and once
+    // when everything is done
+    public Builder progressListener(int interval, ProgressListener listener) {
+      if (interval < 1) {
+        throw new IllegalStateException("Progress interval must be >= 1");
+      }
+      progressInterval = interval;
+      progressListener = listener;
+      return this;
+    }
+
+    public SimilarRecipesJob build() {
+      if (searcher == null) {
+        throw new IllegalStateException("searcher is required");
+      }
+      if (checkpoint == null) {
+        throw new IllegalStateException("checkpoint is required");
+      }
+      return new SimilarRecipesJob(this);
+    }
+  }
+
+  public static class SimilarRecipesJobException extends RuntimeException {
+    SimilarRecipesJobException(String message) {
+      super(message);
+    }
+
+    SimilarRecipesJobException(Exception e) {
+      super(e);
+    }
+  }
+}
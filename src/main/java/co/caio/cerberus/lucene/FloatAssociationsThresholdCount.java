@@ -1,11 +1,13 @@
 package co.caio.cerberus.lucene;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import org.apache.lucene.facet.FacetsCollector;
 import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
 import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.FacetLabel;
 import org.apache.lucene.facet.taxonomy.IntTaxonomyFacets;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
 import org.apache.lucene.index.BinaryDocValues;
@@ -14,7 +16,10 @@ import org.apache.lucene.util.BytesRef;
 
 public class FloatAssociationsThresholdCount extends IntTaxonomyFacets {
 
-  private final Map<String, Float> labelToThreshold;
+  private static final float DEFAULT_THRESHOLD = 1.0f;
+
+  // Indexed by ordinal, so counting doesn't need any lookups
+  private final float[] thresholds;
 
   public FloatAssociationsThresholdCount(
       String indexFieldName,
@@ -29,14 +34,39 @@ public class FloatAssociationsThresholdCount extends IntTaxonomyFacets {
       throw new NullPointerException("_labelToThreshold must not be null");
     }
 
-    labelToThreshold = _labelToThreshold;
+    thresholds = resolveThresholds(_labelToThreshold);
     computeValues(fc.getMatchingDocs());
   }
 
-  private float threshold(int ord) throws IOException {
-    var components = taxoReader.getPath(ord).components;
-    assert components.length == 2;
-    return labelToThreshold.getOrDefault(components[1], 1.0f);
+  // Labels are looked up under every dimension that is indexed into
+  // our field. Ordinals without a threshold get the default one
+  private float[] resolveThresholds(Map<String, Float> labelToThreshold) throws IOException {
+    var resolved = new float[taxoReader.getSize()];
+    Arrays.fill(resolved, DEFAULT_THRESHOLD);
+
+    if (labelToThreshold.isEmpty()) {
+      return resolved;
+    }
+
+    var siblings = getSiblings();
+    int dimOrd = getChildren()[TaxonomyReader.ROOT_ORDINAL];
+
+    while (dimOrd != TaxonomyReader.INVALID_ORDINAL) {
+      var dim = taxoReader.getPath(dimOrd).components[0];
+
+      if (config.getDimConfig(dim).indexFieldName.equals(indexFieldName)) {
+        for (var entry : labelToThreshold.entrySet()) {
+          int ord = taxoReader.getOrdinal(new FacetLabel(dim, entry.getKey()));
+          if (ord != TaxonomyReader.INVALID_ORDINAL) {
+            resolved[ord] = entry.getValue();
+          }
+        }
+      }
+
+      dimOrd = siblings[dimOrd];
+    }
+
+    return resolved;
   }
 
   private void computeValues(List<MatchingDocs> matchingDocs) throws IOException {
@@ -72,7 +102,7 @@ public class FloatAssociationsThresholdCount extends IntTaxonomyFacets {
                     | (bytes[offset + 3] & 0xFF);
             offset += 4;
 
-            if (Float.intBitsToFloat(value) >= threshold(ord)) {
+            if (Float.intBitsToFloat(value) >= thresholds[ord]) {
               increment(ord);
             }
           }
@@ -0,0 +1,151 @@
+package co.caio.cerberus.lucene;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.FacetLabel;
+import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BytesRef;
+
+// Counts, for every label, how many documents have a value of at least
+// each of the given thresholds, i.e.: "a" -> [>= 0.5: 10, >= 0.8: 4]
+// It's what running one FloatAssociationsThresholdCount per threshold
+// would give, but reading the doc values a single time: every value is
+// counted only in the bucket of the highest threshold it reaches and the
+// buckets are accumulated when the histograms are requested.
+public class FloatAssociationsThresholdHistogram {
+
+  private final String indexFieldName;
+  private final TaxonomyReader taxoReader;
+  private final FacetsConfig config;
+  private final float[] thresholds;
+
+  // Indexed by ordinal, only allocated for the ordinals that get counted
+  private final int[][] buckets;
+
+  public FloatAssociationsThresholdHistogram(
+      String indexFieldName,
+      float[] thresholds,
+      TaxonomyReader taxoReader,
+      FacetsConfig config,
+      FacetsCollector fc)
+      throws IOException {
+
+    if (thresholds.length == 0) {
+      throw new IllegalArgumentException("thresholds must not be empty");
+    }
+
+    for (int i = 1; i < thresholds.length; i++) {
+      if (thresholds[i - 1] >= thresholds[i]) {
+        throw new IllegalArgumentException("thresholds must be in ascending order");
+      }
+    }
+
+    this.indexFieldName = indexFieldName;
+    this.taxoReader = taxoReader;
+    this.config = config;
+    this.thresholds = thresholds.clone();
+    this.buckets = new int[taxoReader.getSize()][];
+
+    computeValues(fc.getMatchingDocs());
+  }
+
+  // Every label of the dimension with at least one value reaching the
+  // lowest threshold, mapped to its counts for each threshold (in the
+  // same order the thresholds were given)
+  public Map<String, int[]> getHistograms(String dim) throws IOException {
+    if (!config.getDimConfig(dim).indexFieldName.equals(indexFieldName)) {
+      throw new IllegalArgumentException(
+          String.format("Dimension `%s` was not indexed into field `%s`", dim, indexFieldName));
+    }
+
+    var histograms = new HashMap<String, int[]>();
+
+    int dimOrd = taxoReader.getOrdinal(new FacetLabel(dim));
+    if (dimOrd == TaxonomyReader.INVALID_ORDINAL) {
+      return histograms;
+    }
+
+    var arrays = taxoReader.getParallelTaxonomyArrays();
+    int[] siblings = arrays.siblings();
+
+    for (int ord = arrays.children()[dimOrd];
+        ord != TaxonomyReader.INVALID_ORDINAL;
+        ord = siblings[ord]) {
+      if (buckets[ord] == null) {
+        continue;
+      }
+
+      var counts = buckets[ord].clone();
+      for (int i = counts.length - 2; i >= 0; i--) {
+        counts[i] += counts[i + 1];
+      }
+
+      var components = taxoReader.getPath(ord).components;
+      assert components.length == 2;
+      histograms.put(components[1], counts);
+    }
+
+    return histograms;
+  }
+
+  private void computeValues(List<MatchingDocs> matchingDocs) throws IOException {
+    final int last = thresholds.length - 1;
+
+    for (MatchingDocs hits : matchingDocs) {
+      BinaryDocValues dv = hits.context.reader().getBinaryDocValues(indexFieldName);
+      if (dv == null) {
+        continue;
+      }
+
+      DocIdSetIterator docs = hits.bits.iterator();
+
+      int doc;
+      while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        if (dv.docID() < doc) {
+          dv.advance(doc);
+        }
+        if (dv.docID() == doc) {
+          final BytesRef bytesRef = dv.binaryValue();
+          byte[] bytes = bytesRef.bytes;
+          int end = bytesRef.offset + bytesRef.length;
+          int offset = bytesRef.offset;
+          while (offset < end) {
+            int ord =
+                ((bytes[offset] & 0xFF) << 24)
+                    | ((bytes[offset + 1] & 0xFF) << 16)
+                    | ((bytes[offset + 2] & 0xFF) << 8)
+                    | (bytes[offset + 3] & 0xFF);
+            offset += 4;
+            int value =
+                ((bytes[offset] & 0xFF) << 24)
+                    | ((bytes[offset + 1] & 0xFF) << 16)
+                    | ((bytes[offset + 2] & 0xFF) << 8)
+                    | (bytes[offset + 3] & 0xFF);
+            offset += 4;
+
+            final float score = Float.intBitsToFloat(value);
+
+            int bucket = last;
+            while (bucket >= 0 && score < thresholds[bucket]) {
+              bucket--;
+            }
+
+            if (bucket >= 0) {
+              if (buckets[ord] == null) {
+                buckets[ord] = new int[thresholds.length];
+              }
+              buckets[ord][bucket]++;
+            }
+          }
+        }
+      }
+    }
+  }
+}
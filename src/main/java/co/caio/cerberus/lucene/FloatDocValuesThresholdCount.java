@@ -0,0 +1,124 @@
+package co.caio.cerberus.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.Facets;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+
+// Same counts as FloatAssociationsThresholdCount, but for indices without
+// a taxonomy: every label has its own FloatDocValuesField with the value
+// and all of them are reported under a single dimension
+public class FloatDocValuesThresholdCount extends Facets {
+
+  private static final float DEFAULT_THRESHOLD = 1.0f;
+
+  private final String dim;
+  private final Map<String, Integer> counts;
+
+  public FloatDocValuesThresholdCount(
+      String dim,
+      Map<String, String> labelToField,
+      Map<String, Float> labelToThreshold,
+      FacetsCollector fc)
+      throws IOException {
+    this.dim = dim;
+    this.counts = new HashMap<>();
+
+    for (var entry : labelToField.entrySet()) {
+      var label = entry.getKey();
+      int count =
+          count(
+              entry.getValue(),
+              labelToThreshold.getOrDefault(label, DEFAULT_THRESHOLD),
+              fc.getMatchingDocs());
+      if (count > 0) {
+        counts.put(label, count);
+      }
+    }
+  }
+
+  private static int count(String field, float threshold, List<MatchingDocs> matchingDocs)
+      throws IOException {
+    int count = 0;
+
+    for (MatchingDocs hits : matchingDocs) {
+      NumericDocValues dv = hits.context.reader().getNumericDocValues(field);
+      if (dv == null) {
+        continue;
+      }
+
+      DocIdSetIterator docs = hits.bits.iterator();
+
+      int doc;
+      while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        if (dv.advanceExact(doc) && Float.intBitsToFloat((int) dv.longValue()) >= threshold) {
+          count++;
+        }
+      }
+    }
+
+    return count;
+  }
+
+  @Override
+  public FacetResult getTopChildren(int topN, String dim, String... path) {
+    if (topN <= 0) {
+      throw new IllegalArgumentException("topN must be > 0 (got: " + topN + ")");
+    }
+    checkDimension(dim);
+    if (path.length != 0) {
+      throw new IllegalArgumentException("Labels have no children");
+    }
+
+    if (counts.isEmpty()) {
+      return null;
+    }
+
+    var labelValues = new ArrayList<LabelAndValue>(counts.size());
+    counts.forEach((label, count) -> labelValues.add(new LabelAndValue(label, count)));
+
+    // Same order as the taxonomy counts: highest count first, ties
+    // broken by label
+    labelValues.sort(
+        (a, b) -> {
+          int cmp = Integer.compare(b.value.intValue(), a.value.intValue());
+          return cmp != 0 ? cmp : a.label.compareTo(b.label);
+        });
+
+    var top = labelValues.subList(0, Math.min(topN, labelValues.size()));
+
+    // Like a multi valued dimension without dim counts
+    return new FacetResult(dim, path, -1, top.toArray(new LabelAndValue[0]), labelValues.size());
+  }
+
+  @Override
+  public Number getSpecificValue(String dim, String... path) {
+    if (path.length != 1) {
+      throw new IllegalArgumentException("path must be a single label");
+    }
+    checkDimension(dim);
+    return counts.getOrDefault(path[0], -1);
+  }
+
+  @Override
+  public List<FacetResult> getAllDims(int topN) {
+    var result = getTopChildren(topN, dim);
+    return result == null ? Collections.emptyList() : List.of(result);
+  }
+
+  private void checkDimension(String dim) {
+    if (!this.dim.equals(dim)) {
+      throw new IllegalArgumentException(
+          String.format("Dimension `%s` is not counted here, only `%s`", dim, this.dim));
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package co.caio.cerberus.lucene;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+
+// FloatAssociationsThresholdHistogram for the labels counted by
+// FloatDocValuesThresholdCount: one FloatDocValuesField per label
+public class FloatDocValuesThresholdHistogram {
+
+  private final Map<String, int[]> histograms;
+
+  public FloatDocValuesThresholdHistogram(
+      Map<String, String> labelToField, float[] thresholds, FacetsCollector fc) throws IOException {
+
+    if (thresholds.length == 0) {
+      throw new IllegalArgumentException("thresholds must not be empty");
+    }
+
+    for (int i = 1; i < thresholds.length; i++) {
+      if (thresholds[i - 1] >= thresholds[i]) {
+        throw new IllegalArgumentException("thresholds must be in ascending order");
+      }
+    }
+
+    histograms = new HashMap<>();
+
+    for (var entry : labelToField.entrySet()) {
+      var counts = computeBuckets(entry.getValue(), thresholds, fc.getMatchingDocs());
+      if (counts != null) {
+        for (int i = counts.length - 2; i >= 0; i--) {
+          counts[i] += counts[i + 1];
+        }
+        histograms.put(entry.getKey(), counts);
+      }
+    }
+  }
+
+  // Every label with at least one value reaching the lowest threshold,
+  // mapped to its counts for each threshold (in the same order the
+  // thresholds were given)
+  public Map<String, int[]> getHistograms() {
+    var copy = new HashMap<String, int[]>();
+    histograms.forEach((label, counts) -> copy.put(label, counts.clone()));
+    return copy;
+  }
+
+  private static int[] computeBuckets(
+      String field, float[] thresholds, List<MatchingDocs> matchingDocs) throws IOException {
+    final int last = thresholds.length - 1;
+    int[] buckets = null;
+
+    for (MatchingDocs hits : matchingDocs) {
+      NumericDocValues dv = hits.context.reader().getNumericDocValues(field);
+      if (dv == null) {
+        continue;
+      }
+
+      DocIdSetIterator docs = hits.bits.iterator();
+
+      int doc;
+      while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        if (!dv.advanceExact(doc)) {
+          continue;
+        }
+
+        final float score = Float.intBitsToFloat((int) dv.longValue());
+
+        int bucket = last;
+        while (bucket >= 0 && score < thresholds[bucket]) {
+          bucket--;
+        }
+
+        if (bucket >= 0) {
+          if (buckets == null) {
+            buckets = new int[thresholds.length];
+          }
+          buckets[bucket]++;
+        }
+      }
+    }
+
+    return buckets;
+  }
+}
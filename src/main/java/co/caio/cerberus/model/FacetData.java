@@ -14,5 +14,11 @@ public interface FacetData {
 
   Map<String, Long> children();
 
+  // True when the counts were extrapolated from a sample of the hits
+  @Value.Default
+  default boolean approximate() {
+    return false;
+  }
+
   class Builder extends ImmutableFacetData.Builder {}
 }
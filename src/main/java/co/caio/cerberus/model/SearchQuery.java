@@ -4,7 +4,12 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
 import java.util.stream.Stream;
 import org.immutables.value.Value;
 
@@ -33,20 +38,42 @@ public interface SearchQuery {
 
   Optional<DietSpec> diet();
 
+  // Only recipes with at least one of the labels of every dimension
+  // (as extracted by the CategoryExtractor)
+  Map<String, Set<String>> facetFilters();
+
+  // Filtered dimensions whose facets are counted as if they weren't
+  // filtered, so that clients can offer selecting more labels. All
+  // of them get counted in the same pass
+  Set<String> multiSelectDimensions();
+
+  // Minimum score for a recipe to be counted under a diet in the "diets"
+  // facet. Diets that are not listed default to 1
+  Map<String, Float> dietThresholds();
+
+  // Ascending thresholds for SearchResult.dietHistograms(): how many
+  // recipes reach each of them, for every diet. Counted in a single pass
+  List<Float> dietHistogramThresholds();
+
+  // Opaque value from SearchResult.nextCursor(): resumes the search
+  // right after the last hit of the page that generated it
+  Optional<String> cursor();
+
   @Value.Derived
   default long numSelectedFilters() {
     return Stream.of(
-            numIngredients(),
-            prepTime(),
-            cookTime(),
-            totalTime(),
-            calories(),
-            fatContent(),
-            proteinContent(),
-            carbohydrateContent(),
-            diet())
-        .flatMap(Optional::stream)
-        .count();
+                numIngredients(),
+                prepTime(),
+                cookTime(),
+                totalTime(),
+                calories(),
+                fatContent(),
+                proteinContent(),
+                carbohydrateContent(),
+                diet())
+            .flatMap(Optional::stream)
+            .count()
+        + facetFilters().size();
   }
 
   @Value.Derived
@@ -74,13 +101,30 @@ public interface SearchQuery {
     return 0;
   }
 
+  // When false, counting may stop once enough hits for the requested
+  // page are found and SearchResult.totalHits() becomes a lower bound.
+  // That's what allows searches sorted like the index to end early
+  @Value.Default
+  default boolean exactTotalHits() {
+    return true;
+  }
+
+  // How many hits to count exactly before counting is allowed to stop
+  // (defaults to offset() + maxResults()). Relevance sorted searches
+  // can only skip non-competitive blocks of documents after this point,
+  // so the lower the better. Requires exactTotalHits() to be false
+  OptionalInt totalHitsThreshold();
+
   enum SortOrder {
     RELEVANCE,
     NUM_INGREDIENTS,
     PREP_TIME,
     COOK_TIME,
     TOTAL_TIME,
-    CALORIES
+    CALORIES,
+    FAT_CONTENT,
+    PROTEIN_CONTENT,
+    CARBOHYDRATE_CONTENT
   }
 
   @Value.Default
@@ -150,6 +194,43 @@ public interface SearchQuery {
     if (offset() < 0) {
       throw new IllegalStateException("offset must be >= 0");
     }
+    if (offset() != 0 && cursor().isPresent()) {
+      throw new IllegalStateException("offset can't be used together with a cursor");
+    }
+    facetFilters()
+        .forEach(
+            (dimension, labels) -> {
+              if (labels.isEmpty()) {
+                throw new IllegalStateException(
+                    String.format("Facet filter for `%s` has no labels", dimension));
+              }
+            });
+    dietThresholds()
+        .forEach(
+            (diet, threshold) -> {
+              if (threshold < 0 || threshold > 1) {
+                throw new IllegalStateException(
+                    String.format("Threshold for diet `%s` should be [0,1]", diet));
+              }
+            });
+    var histogramThresholds = dietHistogramThresholds();
+    for (int i = 0; i < histogramThresholds.size(); i++) {
+      var threshold = histogramThresholds.get(i);
+      if (threshold < 0 || threshold > 1) {
+        throw new IllegalStateException("Diet histogram thresholds should be [0,1]");
+      }
+      if (i > 0 && histogramThresholds.get(i - 1) >= threshold) {
+        throw new IllegalStateException("Diet histogram thresholds must be ascending");
+      }
+    }
+    if (totalHitsThreshold().isPresent()) {
+      if (exactTotalHits()) {
+        throw new IllegalStateException("totalHitsThreshold requires exactTotalHits to be false");
+      }
+      if (totalHitsThreshold().getAsInt() < 0) {
+        throw new IllegalStateException("totalHitsThreshold must be >= 0");
+      }
+    }
   }
 
   class Builder extends ImmutableSearchQuery.Builder {
@@ -161,5 +242,10 @@ public interface SearchQuery {
     public Builder diet(String dietName) {
       return diet(dietName, 1F);
     }
+
+    public Builder facetFilter(String dimension, String... labels) {
+      putFacetFilters(dimension, Set.copyOf(Arrays.asList(labels)));
+      return this;
+    }
   }
 }
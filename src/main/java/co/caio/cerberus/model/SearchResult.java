@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import org.immutables.value.Value;
 
 @ImmutableStyle
@@ -17,10 +18,26 @@ public interface SearchResult {
     return 0;
   }
 
+  // False when totalHits() is only a lower bound of the number of
+  // matching recipes. See SearchQuery.exactTotalHits()
+  @Value.Default
+  default boolean exactTotalHits() {
+    return true;
+  }
+
   List<Long> recipeIds();
 
   Map<String, FacetData> facets();
 
+  // For every diet, how many recipes reach each of the thresholds in
+  // SearchQuery.dietHistogramThresholds(), in the same order. Scaled
+  // up like the facets when they are approximate
+  Map<String, List<Long>> dietHistograms();
+
+  // Set when there may be more results: pass it as SearchQuery.cursor()
+  // to fetch the next page
+  Optional<String> nextCursor();
+
   class Builder extends ImmutableSearchResult.Builder {
     public Builder addRecipe(long recipeId) {
       addRecipeIds(recipeId);
@@ -0,0 +1,52 @@
+package co.caio.cerberus.search;
+
+public final class CacheStats {
+
+  static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0);
+
+  private final long hitCount;
+  private final long missCount;
+  private final long evictionCount;
+  private final long size;
+  private final long ramBytesUsed;
+
+  CacheStats(long hitCount, long missCount, long evictionCount, long size, long ramBytesUsed) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.evictionCount = evictionCount;
+    this.size = size;
+    this.ramBytesUsed = ramBytesUsed;
+  }
+
+  public long hitCount() {
+    return hitCount;
+  }
+
+  public long missCount() {
+    return missCount;
+  }
+
+  public long evictionCount() {
+    return evictionCount;
+  }
+
+  public long size() {
+    return size;
+  }
+
+  public long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  public double hitRate() {
+    var lookups = hitCount + missCount;
+    return lookups == 0 ? 0 : (double) hitCount / lookups;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "CacheStats{hits=%d, misses=%d, evictions=%d, size=%d, ramBytesUsed=%d}",
+        hitCount, missCount, evictionCount, size, ramBytesUsed);
+  }
+}
@@ -32,6 +32,10 @@ public interface CategoryExtractor {
 
     public Builder addCategory(
         String name, boolean isMultiValued, Function<Recipe, Set<String>> labelExtractor) {
+      if (IndexField.RESERVED_DIMENSIONS.contains(name)) {
+        throw new IllegalStateException("Category name is reserved: " + name);
+      }
+
       if (categoryToExtractor.containsKey(name)) {
         throw new IllegalStateException("Can't have multiple categories named: " + name);
       }
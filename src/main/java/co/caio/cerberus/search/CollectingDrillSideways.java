@@ -0,0 +1,39 @@
+package co.caio.cerberus.search;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.lucene.facet.DrillSideways;
+import org.apache.lucene.facet.Facets;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.search.IndexSearcher;
+
+// Keeps the collectors of a drill sideways search instead of counting
+// them, so that the counting is left to our FacetCounter (whichever
+// facets mode the index uses)
+class CollectingDrillSideways extends DrillSideways {
+
+  // Hits matching every filter
+  FacetsCollector drillDowns;
+  // Per filtered dimension, hits matching every filter but its own
+  final Map<String, FacetsCollector> drillSideways = new HashMap<>();
+
+  CollectingDrillSideways(IndexSearcher searcher, FacetsConfig config, TaxonomyReader taxoReader) {
+    super(searcher, config, taxoReader);
+  }
+
+  @Override
+  protected Facets buildFacetsResult(
+      FacetsCollector drillDowns, FacetsCollector[] drillSideways, String[] drillSidewaysDims) {
+    this.drillDowns = drillDowns;
+
+    if (drillSideways != null) {
+      for (int i = 0; i < drillSideways.length; i++) {
+        this.drillSideways.put(drillSidewaysDims[i], drillSideways[i]);
+      }
+    }
+
+    return null;
+  }
+}
@@ -0,0 +1,119 @@
+package co.caio.cerberus.search;
+
+import static co.caio.cerberus.search.IndexField.DIETS_DIMENSION;
+import static co.caio.cerberus.search.IndexField.DIET_FIELD_PREFIX;
+
+import co.caio.cerberus.lucene.FloatDocValuesThresholdCount;
+import co.caio.cerberus.lucene.FloatDocValuesThresholdHistogram;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.Facets;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager.SearcherAndTaxonomy;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexReader;
+
+// Counts categories from the SortedSetDocValues that SORTED_SET_DOC_VALUES
+// indices have instead of a taxonomy and diets from the doc values that
+// are already there for filtering
+class DocValuesFacetCounter implements FacetCounter {
+
+  private static final Facets NO_FACETS =
+      new Facets() {
+        @Override
+        public FacetResult getTopChildren(int topN, String dim, String... path) {
+          return null;
+        }
+
+        @Override
+        public Number getSpecificValue(String dim, String... path) {
+          return -1;
+        }
+
+        @Override
+        public List<FacetResult> getAllDims(int topN) {
+          return List.of();
+        }
+      };
+  private final Map<IndexReader.CacheKey, ReaderState> states = new ConcurrentHashMap<>();
+
+  @Override
+  public Facets countCategories(SearcherAndTaxonomy view, FacetsCollector fc) throws IOException {
+    var ssdvState = getState(view).ssdvState;
+    return ssdvState == null ? NO_FACETS : new SortedSetDocValuesFacetCounts(ssdvState, fc);
+  }
+
+  @Override
+  public Facets countDiets(
+      SearcherAndTaxonomy view, Map<String, Float> thresholds, FacetsCollector fc)
+      throws IOException {
+    return new FloatDocValuesThresholdCount(
+        DIETS_DIMENSION, getState(view).dietToField, thresholds, fc);
+  }
+
+  @Override
+  public Map<String, int[]> dietHistograms(
+      SearcherAndTaxonomy view, float[] thresholds, FacetsCollector fc) throws IOException {
+    return new FloatDocValuesThresholdHistogram(getState(view).dietToField, thresholds, fc)
+        .getHistograms();
+  }
+
+  // Building the ordinal map means visiting every unique label in the
+  // index, so it's done once per reader instead of once per request.
+  // Searches still running on the previous reader during a refresh keep
+  // using its state, which goes away when that reader is closed
+  private ReaderState getState(SearcherAndTaxonomy view) throws IOException {
+    var reader = view.searcher.getIndexReader();
+    var cacheHelper = reader.getReaderCacheHelper();
+    var key = cacheHelper.getKey();
+
+    var current = states.get(key);
+    if (current == null) {
+      synchronized (this) {
+        current = states.get(key);
+        if (current == null) {
+          current = new ReaderState(reader);
+          states.put(key, current);
+          cacheHelper.addClosedListener(states::remove);
+        }
+      }
+    }
+
+    return current;
+  }
+
+  private static class ReaderState {
+    // Null when no document has categories
+    final SortedSetDocValuesReaderState ssdvState;
+    final Map<String, String> dietToField;
+
+    ReaderState(IndexReader reader) throws IOException {
+      var fieldInfos = FieldInfos.getMergedFieldInfos(reader);
+
+      var facetsField = fieldInfos.fieldInfo(FacetsConfig.DEFAULT_INDEX_FIELD_NAME);
+      if (facetsField != null && facetsField.getDocValuesType() == DocValuesType.SORTED_SET) {
+        ssdvState = new DefaultSortedSetDocValuesReaderState(reader);
+      } else {
+        ssdvState = null;
+      }
+
+      var diets = new HashMap<String, String>();
+      for (var fieldInfo : fieldInfos) {
+        if (fieldInfo.name.startsWith(DIET_FIELD_PREFIX)
+            && fieldInfo.getDocValuesType() == DocValuesType.NUMERIC) {
+          diets.put(fieldInfo.name.substring(DIET_FIELD_PREFIX.length()), fieldInfo.name);
+        }
+      }
+      dietToField = Map.copyOf(diets);
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package co.caio.cerberus.search;
+
+import static co.caio.cerberus.search.IndexField.CALORIES;
+import static co.caio.cerberus.search.IndexField.CARBOHYDRATE_CONTENT;
+import static co.caio.cerberus.search.IndexField.COOK_TIME;
+import static co.caio.cerberus.search.IndexField.FAT_CONTENT;
+import static co.caio.cerberus.search.IndexField.FULL_RECIPE;
+import static co.caio.cerberus.search.IndexField.NUM_INGREDIENTS;
+import static co.caio.cerberus.search.IndexField.PREP_TIME;
+import static co.caio.cerberus.search.IndexField.PROTEIN_CONTENT;
+import static co.caio.cerberus.search.IndexField.RECIPE_ID;
+import static co.caio.cerberus.search.IndexField.TOTAL_TIME;
+import static co.caio.cerberus.search.IndexField.getFieldNameForDiet;
+
+import co.caio.cerberus.model.Recipe;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.FloatDocValuesField;
+import org.apache.lucene.document.FloatPoint;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+
+// The document for a recipe minus its facets, built out of fields that
+// are allocated once and get their values replaced for every recipe.
+// The IndexWriter is done with a document when addDocument() returns,
+// so a template can be reused right after that, but only by one thread
+final class DocumentTemplate {
+  private final Document document = new Document();
+  private final FieldType fullRecipeType;
+
+  private final StoredField storedId = new StoredField(RECIPE_ID, 0L);
+  private final LongPoint pointId = new LongPoint(RECIPE_ID, 0L);
+  // So that searchers can map hits to ids without touching stored fields
+  private final NumericDocValuesField valuesId = new NumericDocValuesField(RECIPE_ID, 0L);
+
+  // Grows to the longest recipe seen so far
+  private final List<Field> fullRecipe = new ArrayList<>();
+  // Created the first time a diet shows up, along with its field name
+  private final Map<String, FloatFields> diets = new HashMap<>();
+
+  // For sorting and filtering
+  private final IntFields numIngredients = new IntFields(NUM_INGREDIENTS);
+  private final IntFields prepTime = new IntFields(PREP_TIME);
+  private final IntFields cookTime = new IntFields(COOK_TIME);
+  private final IntFields totalTime = new IntFields(TOTAL_TIME);
+  private final IntFields calories = new IntFields(CALORIES);
+  private final FloatFields fatContent = new FloatFields(FAT_CONTENT);
+  private final FloatFields proteinContent = new FloatFields(PROTEIN_CONTENT);
+  private final FloatFields carbohydrateContent = new FloatFields(CARBOHYDRATE_CONTENT);
+
+  DocumentTemplate(FieldType fullRecipeType) {
+    this.fullRecipeType = fullRecipeType;
+  }
+
+  // Only valid until the next call
+  Document fill(Recipe recipe) {
+    document.clear();
+
+    storedId.setLongValue(recipe.recipeId());
+    pointId.setLongValue(recipe.recipeId());
+    valuesId.setLongValue(recipe.recipeId());
+    document.add(storedId);
+    document.add(pointId);
+    document.add(valuesId);
+
+    int numText = 0;
+    addFullRecipe(numText++, recipe.name());
+    for (var instruction : recipe.instructions()) {
+      addFullRecipe(numText++, instruction);
+    }
+    for (var ingredient : recipe.ingredients()) {
+      addFullRecipe(numText++, ingredient);
+    }
+
+    recipe
+        .diets()
+        .forEach(
+            (diet, score) -> {
+              if (score > 0) {
+                // For filtering (and the diet facets without a taxonomy)
+                diets
+                    .computeIfAbsent(diet, d -> new FloatFields(getFieldNameForDiet(d)))
+                    .addTo(document, score);
+              }
+            });
+
+    numIngredients.addTo(document, recipe.ingredients().size());
+    prepTime.addTo(document, recipe.prepTime());
+    cookTime.addTo(document, recipe.cookTime());
+    totalTime.addTo(document, recipe.totalTime());
+    calories.addTo(document, recipe.calories());
+    fatContent.addTo(document, recipe.fatContent());
+    proteinContent.addTo(document, recipe.proteinContent());
+    carbohydrateContent.addTo(document, recipe.carbohydrateContent());
+
+    return document;
+  }
+
+  private void addFullRecipe(int index, String text) {
+    if (index == fullRecipe.size()) {
+      fullRecipe.add(new Field(FULL_RECIPE, text, fullRecipeType));
+    }
+    var field = fullRecipe.get(index);
+    field.setStringValue(text);
+    document.add(field);
+  }
+
+  private static class IntFields {
+    private final IntPoint point;
+    private final NumericDocValuesField values;
+
+    IntFields(String name) {
+      point = new IntPoint(name, 0);
+      values = new NumericDocValuesField(name, 0L);
+    }
+
+    void addTo(Document document, OptionalInt value) {
+      if (value.isPresent()) {
+        addTo(document, value.getAsInt());
+      }
+    }
+
+    void addTo(Document document, int value) {
+      point.setIntValue(value);
+      values.setLongValue(value);
+      document.add(point);
+      document.add(values);
+    }
+  }
+
+  private static class FloatFields {
+    private final FloatPoint point;
+    private final FloatDocValuesField values;
+
+    FloatFields(String name) {
+      point = new FloatPoint(name, 0F);
+      values = new FloatDocValuesField(name, 0F);
+    }
+
+    void addTo(Document document, OptionalDouble value) {
+      if (value.isPresent()) {
+        addTo(document, (float) value.getAsDouble());
+      }
+    }
+
+    void addTo(Document document, float value) {
+      point.setFloatValue(value);
+      values.setFloatValue(value);
+      document.add(point);
+      document.add(values);
+    }
+  }
+}
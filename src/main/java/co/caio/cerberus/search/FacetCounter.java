@@ -0,0 +1,35 @@
+package co.caio.cerberus.search;
+
+import java.io.IOException;
+import java.util.Map;
+import org.apache.lucene.facet.Facets;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager.SearcherAndTaxonomy;
+
+// Counts the facets of the hits a FacetsCollector saw, however they
+// were indexed (see Indexer.FacetsMode)
+interface FacetCounter {
+
+  // The dimensions from the CategoryExtractor
+  Facets countCategories(SearcherAndTaxonomy view, FacetsCollector fc) throws IOException;
+
+  // Under DIETS_DIMENSION: recipes with a score of at least the diet's
+  // threshold, which defaults to 1
+  Facets countDiets(SearcherAndTaxonomy view, Map<String, Float> thresholds, FacetsCollector fc)
+      throws IOException;
+
+  Map<String, int[]> dietHistograms(
+      SearcherAndTaxonomy view, float[] thresholds, FacetsCollector fc) throws IOException;
+
+  static FacetCounter create(IndexConfiguration indexConfiguration) {
+    switch (indexConfiguration.getFacetsMode()) {
+      case TAXONOMY:
+        return new TaxonomyFacetCounter(indexConfiguration.getFacetsConfig());
+      case SORTED_SET_DOC_VALUES:
+        return new DocValuesFacetCounter();
+      default:
+        throw new IllegalStateException(
+            String.format("Unknown facets mode: %s", indexConfiguration.getFacetsMode()));
+    }
+  }
+}
@@ -1,5 +1,9 @@
 package co.caio.cerberus.search;
 
+import static co.caio.cerberus.search.IndexField.*;
+
+import co.caio.cerberus.model.SearchQuery.SortOrder;
+import co.caio.cerberus.search.Indexer.FacetsMode;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -12,26 +16,78 @@ import java.util.stream.Collectors;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.FacetsConfig.DimConfig;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortField.Type;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 
 class IndexConfiguration {
   private static final String INDEX_DIR_NAME = "index";
   private static final String TAXONOMY_DIR_NAME = "taxonomy";
+  private static final String SUGGESTER_DIR_NAME = "suggester";
 
   static final String CONFIG_NAME = "config.properties";
   private static final String CONFIG_MULTI_VALUED_KEY = "multiValued";
+  private static final String CONFIG_INDEX_SORT_KEY = "indexSort";
+  private static final String CONFIG_FACETS_MODE_KEY = "facetsMode";
+  private static final String CONFIG_TERM_VECTORS_KEY = "termVectors";
+
+  private static final DimConfig dietsDimConfig = new DimConfig();
+
+  static {
+    dietsDimConfig.multiValued = true;
+    dietsDimConfig.indexFieldName = DIETS_FACET_FIELD;
+  }
 
   private final FacetsConfig facetsConfig;
   private final Analyzer analyzer;
+  // RELEVANCE means that the index is not sorted
+  private final SortOrder indexSortOrder;
+  private final FacetsMode facetsMode;
+  private final boolean termVectors;
 
   private final Path baseDirectory;
 
   IndexConfiguration(Path baseDirectory, Set<String> multiValuedDimensions) {
+    this(baseDirectory, multiValuedDimensions, SortOrder.RELEVANCE);
+  }
+
+  IndexConfiguration(
+      Path baseDirectory, Set<String> multiValuedDimensions, SortOrder indexSortOrder) {
+    this(baseDirectory, multiValuedDimensions, indexSortOrder, FacetsMode.TAXONOMY);
+  }
+
+  IndexConfiguration(
+      Path baseDirectory,
+      Set<String> multiValuedDimensions,
+      SortOrder indexSortOrder,
+      FacetsMode facetsMode) {
+    this(baseDirectory, multiValuedDimensions, indexSortOrder, facetsMode, false);
+  }
+
+  IndexConfiguration(
+      Path baseDirectory,
+      Set<String> multiValuedDimensions,
+      SortOrder indexSortOrder,
+      FacetsMode facetsMode,
+      boolean termVectors) {
     this.baseDirectory = baseDirectory;
     this.analyzer = new EnglishAnalyzer();
-
-    this.facetsConfig = new FacetsConfig();
+    this.indexSortOrder = indexSortOrder;
+    this.facetsMode = facetsMode;
+    this.termVectors = termVectors;
+
+    this.facetsConfig =
+        new FacetsConfig() {
+          // Always there, but kept out of getDimConfigs() since it's
+          // not a category
+          @Override
+          public DimConfig getDimConfig(String dimName) {
+            return DIETS_DIMENSION.equals(dimName) ? dietsDimConfig : super.getDimConfig(dimName);
+          }
+        };
     multiValuedDimensions.forEach(c -> facetsConfig.setMultiValued(c, true));
   }
 
@@ -46,6 +102,9 @@ class IndexConfiguration {
             .filter(e -> e.getValue().multiValued)
             .map(Entry::getKey)
             .collect(Collectors.joining(",")));
+    props.setProperty(CONFIG_INDEX_SORT_KEY, indexSortOrder.name());
+    props.setProperty(CONFIG_FACETS_MODE_KEY, facetsMode.name());
+    props.setProperty(CONFIG_TERM_VECTORS_KEY, Boolean.toString(termVectors));
 
     props.store(new FileWriter(baseDirectory.resolve(CONFIG_NAME).toFile()), null);
   }
@@ -58,6 +117,62 @@ class IndexConfiguration {
     return analyzer;
   }
 
+  SortOrder getIndexSortOrder() {
+    return indexSortOrder;
+  }
+
+  FacetsMode getFacetsMode() {
+    return facetsMode;
+  }
+
+  // Whether FULL_RECIPE has its term vectors stored
+  boolean hasTermVectors() {
+    return termVectors;
+  }
+
+  Sort getIndexSort() {
+    if (indexSortOrder == SortOrder.RELEVANCE) {
+      return null;
+    }
+    return new Sort(sortField(indexSortOrder));
+  }
+
+  // Recipes missing the value always come last
+  static SortField sortField(SortOrder sortOrder) {
+    switch (sortOrder) {
+      case NUM_INGREDIENTS:
+        return intSortField(NUM_INGREDIENTS);
+      case PREP_TIME:
+        return intSortField(PREP_TIME);
+      case COOK_TIME:
+        return intSortField(COOK_TIME);
+      case TOTAL_TIME:
+        return intSortField(TOTAL_TIME);
+      case CALORIES:
+        return intSortField(CALORIES);
+      case FAT_CONTENT:
+        return floatSortField(FAT_CONTENT);
+      case PROTEIN_CONTENT:
+        return floatSortField(PROTEIN_CONTENT);
+      case CARBOHYDRATE_CONTENT:
+        return floatSortField(CARBOHYDRATE_CONTENT);
+      default:
+        throw new IllegalStateException(String.format("Not a field sort order: %s", sortOrder));
+    }
+  }
+
+  private static SortField intSortField(String fieldName) {
+    var field = new SortField(fieldName, Type.INT);
+    field.setMissingValue(Integer.MAX_VALUE);
+    return field;
+  }
+
+  private static SortField floatSortField(String fieldName) {
+    var field = new SortField(fieldName, Type.FLOAT);
+    field.setMissingValue(Float.MAX_VALUE);
+    return field;
+  }
+
   Directory openIndexDirectory() throws IOException {
     return FSDirectory.open(baseDirectory.resolve(INDEX_DIR_NAME));
   }
@@ -66,6 +181,10 @@ class IndexConfiguration {
     return FSDirectory.open(baseDirectory.resolve(TAXONOMY_DIR_NAME));
   }
 
+  Directory openSuggesterDirectory() throws IOException {
+    return FSDirectory.open(baseDirectory.resolve(SUGGESTER_DIR_NAME));
+  }
+
   static IndexConfiguration fromBaseDirectory(Path baseDirectory) throws IOException {
     var configPath = baseDirectory.resolve(CONFIG_NAME);
     var props = new Properties();
@@ -80,6 +199,20 @@ class IndexConfiguration {
 
     var multiValuedDimensions = Arrays.stream(csv.split(",")).collect(Collectors.toSet());
 
-    return new IndexConfiguration(baseDirectory, multiValuedDimensions);
+    SortOrder indexSortOrder;
+    FacetsMode facetsMode;
+    try {
+      indexSortOrder =
+          SortOrder.valueOf(props.getProperty(CONFIG_INDEX_SORT_KEY, SortOrder.RELEVANCE.name()));
+      facetsMode =
+          FacetsMode.valueOf(props.getProperty(CONFIG_FACETS_MODE_KEY, FacetsMode.TAXONOMY.name()));
+    } catch (IllegalArgumentException wrapped) {
+      throw new IOException("Invalid configuration file", wrapped);
+    }
+
+    var termVectors = Boolean.parseBoolean(props.getProperty(CONFIG_TERM_VECTORS_KEY));
+
+    return new IndexConfiguration(
+        baseDirectory, multiValuedDimensions, indexSortOrder, facetsMode, termVectors);
   }
 }
@@ -1,5 +1,7 @@
 package co.caio.cerberus.search;
 
+import java.util.Set;
+
 class IndexField {
   static final String RECIPE_ID = "recipeId";
   static final String NUM_INGREDIENTS = "numIngredients";
@@ -12,7 +14,22 @@ class IndexField {
   static final String CARBOHYDRATE_CONTENT = "carbohydrateContent";
   static final String FULL_RECIPE = "fullRecipe";
 
+  // Facet dimension with every diet score of a recipe. Associations
+  // can't share an index field with regular facets, so it has its own
+  static final String DIETS_DIMENSION = "diets";
+  static final String DIETS_FACET_FIELD = "$diets";
+
+  // Facet dimensions for the range counts configured on Searcher.Builder
+  static final String TOTAL_TIME_DIMENSION = "totalTimeRanges";
+  static final String CALORIES_DIMENSION = "caloriesRanges";
+  static final String NUM_INGREDIENTS_DIMENSION = "numIngredientsRanges";
+
+  static final Set<String> RESERVED_DIMENSIONS =
+      Set.of(DIETS_DIMENSION, TOTAL_TIME_DIMENSION, CALORIES_DIMENSION, NUM_INGREDIENTS_DIMENSION);
+
+  static final String DIET_FIELD_PREFIX = "diet_";
+
   static String getFieldNameForDiet(String diet) {
-    return "diet_" + diet;
+    return DIET_FIELD_PREFIX + diet;
   }
 }
@@ -1,12 +1,24 @@
 package co.caio.cerberus.search;
 
 import co.caio.cerberus.model.Recipe;
+import co.caio.cerberus.model.SearchQuery.SortOrder;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.stream.Stream;
 
 public interface Indexer {
   void addRecipe(Recipe recipe) throws IOException;
 
+  // Builds and adds the documents on `parallelism` threads, reading from
+  // the stream only as fast as they keep up. Returns once every recipe
+  // has been added or stops at the first one that fails
+  void addRecipes(Stream<Recipe> recipes, int parallelism) throws IOException;
+
+  default void addRecipes(Stream<Recipe> recipes) throws IOException {
+    addRecipes(recipes, Runtime.getRuntime().availableProcessors());
+  }
+
   int numDocs();
 
   void close() throws IOException;
@@ -17,14 +29,95 @@ public interface Indexer {
 
   class Factory {
     public static Indexer open(Path dir, CategoryExtractor extractor) {
+      return open(dir, extractor, SortOrder.RELEVANCE);
+    }
+
+    // Keeps the index sorted by the given order so that searching with
+    // it can stop collecting early. RELEVANCE leaves the index unsorted
+    public static Indexer open(Path dir, CategoryExtractor extractor, SortOrder indexSort) {
+      return open(dir, extractor, indexSort, FacetsMode.TAXONOMY);
+    }
+
+    // The profile only applies to this writer, it's not persisted. An
+    // existing index is opened with the settings it was created with
+    public static Indexer open(Path dir, CategoryExtractor extractor, WriterProfile profile) {
+      if (!Files.exists(dir.resolve(IndexConfiguration.CONFIG_NAME))) {
+        return open(dir, extractor, SortOrder.RELEVANCE, FacetsMode.TAXONOMY, false, profile);
+      }
+
+      IndexConfiguration existing;
+      try {
+        existing = IndexConfiguration.fromBaseDirectory(dir);
+      } catch (IOException wrapped) {
+        throw new IndexerException(wrapped);
+      }
+      return open(
+          dir,
+          extractor,
+          existing.getIndexSortOrder(),
+          existing.getFacetsMode(),
+          existing.hasTermVectors(),
+          profile);
+    }
+
+    public static Indexer open(
+        Path dir, CategoryExtractor extractor, SortOrder indexSort, FacetsMode facetsMode) {
+      return open(dir, extractor, indexSort, facetsMode, false);
+    }
+
+    // Storing the term vectors of the recipe text makes the index bigger
+    // but lets Searcher.findSimilar(long, int) skip analyzing it again
+    public static Indexer open(
+        Path dir,
+        CategoryExtractor extractor,
+        SortOrder indexSort,
+        FacetsMode facetsMode,
+        boolean termVectors) {
+      return open(dir, extractor, indexSort, facetsMode, termVectors, WriterProfile.DEFAULT);
+    }
+
+    public static Indexer open(
+        Path dir,
+        CategoryExtractor extractor,
+        SortOrder indexSort,
+        FacetsMode facetsMode,
+        boolean termVectors,
+        WriterProfile profile) {
       try {
-        return new IndexerImpl(dir, extractor);
+        return new IndexerImpl(dir, extractor, indexSort, facetsMode, termVectors, profile);
       } catch (Exception wrapped) {
         throw new IndexerException(wrapped);
       }
     }
   }
 
+  enum FacetsMode {
+    // Categories go to a taxonomy index that lives next to the main one
+    // and has to be shipped and refreshed along with it
+    TAXONOMY,
+    // Everything stays in the main index: categories are counted from
+    // SortedSetDocValues and diets from the doc values used for filtering
+    SORTED_SET_DOC_VALUES
+  }
+
+  // How the IndexWriter buffers and merges. Unlike the facets mode it's
+  // not persisted: an index can be bulk loaded and then kept up to date
+  // with another profile
+  enum WriterProfile {
+    // Lucene's defaults
+    DEFAULT,
+    // Building a whole index in one go: large RAM buffer, no compound
+    // files and merges left for when segments pile up. Best followed by
+    // mergeSegments()
+    BULK,
+    // Small batches committed often, merging in the background with
+    // throttled I/O so that searches on the same machine don't suffer
+    INCREMENTAL,
+    // Like INCREMENTAL, but merging more eagerly to keep the number of
+    // segments (and so the per segment cost of every search) low
+    LOW_LATENCY_SEARCH
+  }
+
   class IndexerException extends RuntimeException {
     IndexerException(Exception e) {
       super(e);
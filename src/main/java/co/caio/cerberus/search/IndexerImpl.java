@@ -1,126 +1,166 @@
 package co.caio.cerberus.search;
 
-import static co.caio.cerberus.search.IndexField.CALORIES;
-import static co.caio.cerberus.search.IndexField.CARBOHYDRATE_CONTENT;
-import static co.caio.cerberus.search.IndexField.COOK_TIME;
-import static co.caio.cerberus.search.IndexField.FAT_CONTENT;
-import static co.caio.cerberus.search.IndexField.FULL_RECIPE;
-import static co.caio.cerberus.search.IndexField.NUM_INGREDIENTS;
-import static co.caio.cerberus.search.IndexField.PREP_TIME;
-import static co.caio.cerberus.search.IndexField.PROTEIN_CONTENT;
-import static co.caio.cerberus.search.IndexField.RECIPE_ID;
-import static co.caio.cerberus.search.IndexField.TOTAL_TIME;
-import static co.caio.cerberus.search.IndexField.getFieldNameForDiet;
+import static co.caio.cerberus.search.IndexField.DIETS_DIMENSION;
 import static org.apache.lucene.index.IndexWriterConfig.OpenMode.CREATE_OR_APPEND;
 
+import co.caio.cerberus.lucene.FloatThresholdField;
 import co.caio.cerberus.model.Recipe;
+import co.caio.cerberus.model.SearchQuery.SortOrder;
+import co.caio.cerberus.search.Indexer.FacetsMode;
+import co.caio.cerberus.search.Indexer.WriterProfile;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field.Store;
-import org.apache.lucene.document.FloatPoint;
-import org.apache.lucene.document.IntPoint;
-import org.apache.lucene.document.LongPoint;
-import org.apache.lucene.document.NumericDocValuesField;
-import org.apache.lucene.document.StoredField;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.facet.FacetField;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
 
 public final class IndexerImpl implements Indexer {
   private final IndexWriter indexWriter;
+  // Null when facets are indexed as SortedSetDocValues
   private final DirectoryTaxonomyWriter taxonomyWriter;
   private final IndexConfiguration indexConfiguration;
   private final CategoryExtractor categoryExtractor;
+  private final ThreadLocal<DocumentTemplate> documentTemplate;
 
-  IndexerImpl(Path dir, CategoryExtractor extractor) throws IOException {
-    categoryExtractor = extractor;
-    indexConfiguration = new IndexConfiguration(dir, categoryExtractor.multiValuedCategories());
-    indexConfiguration.save();
-
-    var writerConfig = new IndexWriterConfig(indexConfiguration.getAnalyzer());
-    writerConfig.setOpenMode(CREATE_OR_APPEND);
+  private static final FieldType FULL_RECIPE_WITH_TERM_VECTORS =
+      new FieldType(TextField.TYPE_NOT_STORED);
 
-    indexWriter = new IndexWriter(indexConfiguration.openIndexDirectory(), writerConfig);
-    taxonomyWriter =
-        new DirectoryTaxonomyWriter(indexConfiguration.openTaxonomyDirectory(), CREATE_OR_APPEND);
+  static {
+    FULL_RECIPE_WITH_TERM_VECTORS.setStoreTermVectors(true);
+    FULL_RECIPE_WITH_TERM_VECTORS.freeze();
   }
 
-  @Override
-  public void addRecipe(Recipe recipe) throws IOException {
-    var doc = new Document();
-
-    doc.add(new StoredField(RECIPE_ID, recipe.recipeId()));
-    doc.add(new LongPoint(RECIPE_ID, recipe.recipeId()));
+  IndexerImpl(
+      Path dir,
+      CategoryExtractor extractor,
+      SortOrder indexSort,
+      FacetsMode facetsMode,
+      boolean termVectors,
+      WriterProfile profile)
+      throws IOException {
+    // Documents would end up indexed in different ways
+    if (Files.exists(dir.resolve(IndexConfiguration.CONFIG_NAME))) {
+      var existing = IndexConfiguration.fromBaseDirectory(dir);
+      if (existing.getFacetsMode() != facetsMode) {
+        throw new IllegalStateException(
+            String.format(
+                "Index uses facets mode %s, not %s", existing.getFacetsMode(), facetsMode));
+      }
+      if (existing.getIndexSortOrder() != indexSort) {
+        throw new IllegalStateException(
+            String.format(
+                "Index is sorted by %s, not %s", existing.getIndexSortOrder(), indexSort));
+      }
+      if (existing.hasTermVectors() != termVectors) {
+        throw new IllegalStateException(
+            String.format(
+                "Index has termVectors=%s, not %s", existing.hasTermVectors(), termVectors));
+      }
+    }
 
-    doc.add(new TextField(FULL_RECIPE, recipe.name(), Store.NO));
-    recipe.instructions().forEach(i -> doc.add(new TextField(FULL_RECIPE, i, Store.NO)));
-    recipe.ingredients().forEach(i -> doc.add(new TextField(FULL_RECIPE, i, Store.NO)));
-
-    recipe
-        .diets()
-        .forEach(
-            (diet, score) -> {
-              if (score > 0) {
-                doc.add(new FloatPoint(getFieldNameForDiet(diet), score));
-              }
-            });
-
-    var numIngredients = recipe.ingredients().size();
-    doc.add(new IntPoint(NUM_INGREDIENTS, numIngredients));
-    doc.add(new NumericDocValuesField(NUM_INGREDIENTS, numIngredients));
+    categoryExtractor = extractor;
+    indexConfiguration =
+        new IndexConfiguration(
+            dir, categoryExtractor.multiValuedCategories(), indexSort, facetsMode, termVectors);
+    var fullRecipeType = termVectors ? FULL_RECIPE_WITH_TERM_VECTORS : TextField.TYPE_NOT_STORED;
+    documentTemplate = ThreadLocal.withInitial(() -> new DocumentTemplate(fullRecipeType));
 
-    // Timing
+    var writerConfig = new IndexWriterConfig(indexConfiguration.getAnalyzer());
+    writerConfig.setOpenMode(CREATE_OR_APPEND);
+    applyProfile(writerConfig, profile);
 
-    recipe
-        .prepTime()
-        .ifPresent(
-            value -> {
-              doc.add(new IntPoint(PREP_TIME, value));
-              // For sorting
-              doc.add(new NumericDocValuesField(PREP_TIME, value));
-            });
+    var sort = indexConfiguration.getIndexSort();
+    if (sort != null) {
+      writerConfig.setIndexSort(sort);
+    }
 
-    recipe
-        .cookTime()
-        .ifPresent(
-            value -> {
-              doc.add(new IntPoint(COOK_TIME, value));
-              // For sorting
-              doc.add(new NumericDocValuesField(COOK_TIME, value));
-            });
+    // Also fails if the index has segments with a different sort, so
+    // we only save the configuration after opening it
+    indexWriter = new IndexWriter(indexConfiguration.openIndexDirectory(), writerConfig);
+    if (facetsMode == FacetsMode.TAXONOMY) {
+      taxonomyWriter =
+          new DirectoryTaxonomyWriter(indexConfiguration.openTaxonomyDirectory(), CREATE_OR_APPEND);
+    } else {
+      taxonomyWriter = null;
+    }
 
-    recipe
-        .totalTime()
-        .ifPresent(
-            value -> {
-              doc.add(new IntPoint(TOTAL_TIME, value));
-              // For sorting
-              doc.add(new NumericDocValuesField(TOTAL_TIME, value));
-            });
+    indexConfiguration.save();
+  }
 
-    // Nutrition
+  static void applyProfile(IndexWriterConfig config, WriterProfile profile) {
+    switch (profile) {
+      case DEFAULT:
+        break;
+      case BULK:
+        config.setRAMBufferSizeMB(256);
+        config.setUseCompoundFile(false);
+        config.setMergePolicy(mergePolicy(30, 0));
+        // Nobody is searching yet, merges may use all the I/O they want
+        config.setMergeScheduler(mergeScheduler(false));
+        break;
+      case INCREMENTAL:
+        config.setRAMBufferSizeMB(32);
+        config.setMergePolicy(mergePolicy(10, TieredMergePolicy.DEFAULT_NO_CFS_RATIO));
+        config.setMergeScheduler(mergeScheduler(true));
+        break;
+      case LOW_LATENCY_SEARCH:
+        config.setRAMBufferSizeMB(16);
+        config.setMergePolicy(mergePolicy(4, TieredMergePolicy.DEFAULT_NO_CFS_RATIO));
+        config.setMergeScheduler(mergeScheduler(true));
+        break;
+      default:
+        throw new IllegalStateException("Unknown writer profile: " + profile);
+    }
+  }
 
-    recipe
-        .calories()
-        .ifPresent(
-            value -> {
-              doc.add(new IntPoint(CALORIES, value));
-              // For sorting
-              doc.add(new NumericDocValuesField(CALORIES, value));
-            });
+  private static TieredMergePolicy mergePolicy(int segmentsPerTier, double noCFSRatio) {
+    var mergePolicy = new TieredMergePolicy();
+    mergePolicy.setSegmentsPerTier(segmentsPerTier);
+    mergePolicy.setMaxMergeAtOnce(segmentsPerTier);
+    mergePolicy.setNoCFSRatio(noCFSRatio);
+    return mergePolicy;
+  }
 
-    recipe.fatContent().ifPresent(value -> doc.add(new FloatPoint(FAT_CONTENT, (float) value)));
+  private static ConcurrentMergeScheduler mergeScheduler(boolean throttled) {
+    var mergeScheduler = new ConcurrentMergeScheduler();
+    if (throttled) {
+      // A single merge at a time, slowed down while there is no backlog
+      mergeScheduler.setMaxMergesAndThreads(2, 1);
+      mergeScheduler.enableAutoIOThrottle();
+    } else {
+      mergeScheduler.disableAutoIOThrottle();
+    }
+    return mergeScheduler;
+  }
 
-    recipe
-        .proteinContent()
-        .ifPresent(value -> doc.add(new FloatPoint(PROTEIN_CONTENT, (float) value)));
+  @Override
+  public void addRecipe(Recipe recipe) throws IOException {
+    var doc = documentTemplate.get().fill(recipe);
 
-    recipe
-        .carbohydrateContent()
-        .ifPresent(value -> doc.add(new FloatPoint(CARBOHYDRATE_CONTENT, (float) value)));
+    // Facet fields are only read by FacetsConfig.build(), which turns
+    // them into brand new fields anyway
+    if (taxonomyWriter != null) {
+      recipe
+          .diets()
+          .forEach(
+              (diet, score) -> {
+                if (score > 0) {
+                  doc.add(new FloatThresholdField(score, DIETS_DIMENSION, diet));
+                }
+              });
+    }
 
     categoryExtractor
         .categoryToExtractor()
@@ -130,10 +170,78 @@ public final class IndexerImpl implements Indexer {
                     .apply(recipe)
                     .forEach(
                         label -> {
-                          doc.add(new FacetField(dimension, label));
+                          if (taxonomyWriter != null) {
+                            doc.add(new FacetField(dimension, label));
+                          } else {
+                            doc.add(new SortedSetDocValuesFacetField(dimension, label));
+                          }
                         }));
 
-    indexWriter.addDocument(indexConfiguration.getFacetsConfig().build(taxonomyWriter, doc));
+    var facetsConfig = indexConfiguration.getFacetsConfig();
+    indexWriter.addDocument(
+        taxonomyWriter != null ? facetsConfig.build(taxonomyWriter, doc) : facetsConfig.build(doc));
+  }
+
+  @Override
+  public void addRecipes(Stream<Recipe> recipes, int parallelism) throws IOException {
+    if (parallelism < 1) {
+      throw new IllegalStateException("parallelism must be >= 1");
+    }
+
+    if (parallelism == 1) {
+      for (var recipe : (Iterable<Recipe>) recipes::iterator) {
+        addRecipe(recipe);
+      }
+      return;
+    }
+
+    var executor =
+        Executors.newFixedThreadPool(
+            parallelism,
+            runnable -> {
+              var thread = new Thread(runnable, "cerberus-indexer");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    // Keeps the queue short so that a slow index doesn't make us read
+    // the whole stream into memory
+    var slots = new Semaphore(parallelism * 4);
+    var failure = new AtomicReference<Exception>();
+
+    try {
+      var iterator = recipes.iterator();
+      while (iterator.hasNext() && failure.get() == null) {
+        var recipe = iterator.next();
+        slots.acquire();
+        executor.execute(
+            () -> {
+              try {
+                // Both writers are thread-safe
+                addRecipe(recipe);
+              } catch (Exception e) {
+                failure.compareAndSet(null, e);
+              } finally {
+                slots.release();
+              }
+            });
+      }
+
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException wrapped) {
+      Thread.currentThread().interrupt();
+      throw new IndexerException(wrapped);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    var exception = failure.get();
+    if (exception instanceof IOException) {
+      throw (IOException) exception;
+    } else if (exception instanceof RuntimeException) {
+      throw (RuntimeException) exception;
+    }
   }
 
   @Override
@@ -149,12 +257,18 @@ public final class IndexerImpl implements Indexer {
   @Override
   public void close() throws IOException {
     indexWriter.close();
-    taxonomyWriter.close();
+    if (taxonomyWriter != null) {
+      taxonomyWriter.close();
+    }
   }
 
   @Override
   public void commit() throws IOException {
+    // The taxonomy goes first: a searcher refreshing between both
+    // commits must never see ordinals its taxonomy doesn't know about
+    if (taxonomyWriter != null) {
+      taxonomyWriter.commit();
+    }
     indexWriter.commit();
-    taxonomyWriter.commit();
   }
 }
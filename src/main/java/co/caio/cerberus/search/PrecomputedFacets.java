@@ -0,0 +1,129 @@
+package co.caio.cerberus.search;
+
+import co.caio.cerberus.model.SearchQuery;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.Facets;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsCollectorManager;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager.SearcherAndTaxonomy;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+
+// Hit and facet counts for queries that are too common to be counted
+// on every request: the whole index plus the filter combinations given
+// to Searcher.Builder. They are computed once per reader, when the
+// searcher opens and after every refresh, and only ever served for that
+// same reader.
+// Lookups are by the rewritten lucene query, so any SearchQuery that
+// ends up as the same lucene query benefits, regardless of pagination
+// or sorting.
+class PrecomputedFacets {
+
+  private final List<SearchQuery> queries;
+  private final Function<SearchQuery, Query> toLuceneQuery;
+  private final FacetCounter facetCounter;
+  private final RangeFacets rangeFacets;
+
+  private volatile Snapshot snapshot;
+
+  PrecomputedFacets(
+      List<SearchQuery> queries,
+      Function<SearchQuery, Query> toLuceneQuery,
+      FacetCounter facetCounter,
+      RangeFacets rangeFacets) {
+    this.queries = queries;
+    this.toLuceneQuery = toLuceneQuery;
+    this.facetCounter = facetCounter;
+    this.rangeFacets = rangeFacets;
+  }
+
+  // Null when there's nothing precomputed for the query or the view is
+  // not the one the counts are for. Computing them here would make
+  // requests wait on update() and could let an old view replace the
+  // counts of a newer one
+  Entry get(SearcherAndTaxonomy view, Query rewritten) {
+    var current = snapshot;
+
+    if (current == null || current.readerKey != readerKey(view)) {
+      return null;
+    }
+
+    return current.entries.get(rewritten);
+  }
+
+  synchronized void update(SearcherAndTaxonomy view) throws IOException {
+    var readerKey = readerKey(view);
+
+    if (snapshot != null && snapshot.readerKey == readerKey) {
+      return;
+    }
+
+    var entries = new HashMap<Query, Entry>();
+
+    entries.put(new MatchAllDocsQuery(), compute(view, new MatchAllDocsQuery()));
+    for (var query : queries) {
+      var rewritten = view.searcher.rewrite(toLuceneQuery.apply(query));
+      entries.put(rewritten, compute(view, rewritten));
+    }
+
+    snapshot = new Snapshot(readerKey, entries);
+  }
+
+  private Entry compute(SearcherAndTaxonomy view, Query query) throws IOException {
+    var fc = view.searcher.search(query, new FacetsCollectorManager());
+
+    int totalHits = 0;
+    for (var matchingDocs : fc.getMatchingDocs()) {
+      totalHits += matchingDocs.totalHits;
+    }
+
+    return new Entry(
+        totalHits,
+        facetCounter.countCategories(view, fc),
+        facetCounter.countDiets(view, Map.of(), fc),
+        rangeFacets.compute(fc),
+        fc);
+  }
+
+  private static Object readerKey(SearcherAndTaxonomy view) {
+    return view.searcher.getIndexReader().getReaderCacheHelper().getKey();
+  }
+
+  static class Entry {
+    final int totalHits;
+    final Facets facets;
+    // With the default thresholds
+    final Facets diets;
+    final List<FacetResult> ranges;
+    // Kept for diet facets with custom thresholds
+    final FacetsCollector collector;
+
+    Entry(
+        int totalHits,
+        Facets facets,
+        Facets diets,
+        List<FacetResult> ranges,
+        FacetsCollector collector) {
+      this.totalHits = totalHits;
+      this.facets = facets;
+      this.diets = diets;
+      this.ranges = ranges;
+      this.collector = collector;
+    }
+  }
+
+  private static class Snapshot {
+    final Object readerKey;
+    final Map<Query, Entry> entries;
+
+    Snapshot(Object readerKey, Map<Query, Entry> entries) {
+      this.readerKey = readerKey;
+      this.entries = entries;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package co.caio.cerberus.search;
+
+import static co.caio.cerberus.search.IndexField.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.range.LongRange;
+import org.apache.lucene.facet.range.LongRangeFacetCounts;
+import org.apache.lucene.search.LongValuesSource;
+
+// Bucketed counts over numeric doc values, computed from the same
+// FacetsCollector as the taxonomy facets so that they cost a doc values
+// lookup per hit instead of a count query per bucket
+class RangeFacets {
+
+  private static final Map<String, String> dimensionToField =
+      Map.of(
+          TOTAL_TIME_DIMENSION, TOTAL_TIME,
+          CALORIES_DIMENSION, CALORIES,
+          NUM_INGREDIENTS_DIMENSION, NUM_INGREDIENTS);
+
+  private final Map<String, LongRange[]> dimensionToRanges;
+
+  RangeFacets(Map<String, LongRange[]> dimensionToRanges) {
+    this.dimensionToRanges = dimensionToRanges;
+  }
+
+  List<FacetResult> compute(FacetsCollector fc) throws IOException {
+    var results = new ArrayList<FacetResult>(dimensionToRanges.size());
+
+    for (var entry : dimensionToRanges.entrySet()) {
+      var dimension = entry.getKey();
+      var ranges = entry.getValue();
+      var counts =
+          new LongRangeFacetCounts(
+              dimension,
+              LongValuesSource.fromLongField(dimensionToField.get(dimension)),
+              fc,
+              ranges);
+      // Range counts ignore topN: every bucket is returned, in order
+      results.add(counts.getTopChildren(ranges.length, dimension));
+    }
+
+    return results;
+  }
+}
@@ -0,0 +1,79 @@
+package co.caio.cerberus.search;
+
+import static co.caio.cerberus.search.IndexField.RECIPE_ID;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.ScoreDoc;
+
+class RecipeIdResolver {
+
+  private static final Set<String> STORED_ID_ONLY = Set.of(RECIPE_ID);
+  private static final long[] EMPTY = new long[0];
+
+  // Resolves the recipe ids of hits[from:] in the same order as
+  // the hits. Doc values are forward-only iterators, so we visit
+  // the documents in doc id order and then put the ids back where
+  // they belong
+  static long[] resolve(IndexReader reader, ScoreDoc[] hits, int from) throws IOException {
+    final int numIds = hits.length - from;
+
+    if (numIds <= 0) {
+      return EMPTY;
+    }
+
+    // (docId, position) packed into a long so that sorting is
+    // just sorting a primitive array
+    var docAndPosition = new long[numIds];
+    for (int i = 0; i < numIds; i++) {
+      docAndPosition[i] = ((long) hits[from + i].doc << 32) | i;
+    }
+    Arrays.sort(docAndPosition);
+
+    var leaves = reader.leaves();
+    var recipeIds = new long[numIds];
+
+    LeafReaderContext leaf = null;
+    NumericDocValues values = null;
+    int leafEnd = -1;
+
+    for (long packed : docAndPosition) {
+      final int doc = (int) (packed >>> 32);
+      final int position = (int) packed;
+
+      if (doc >= leafEnd) {
+        leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+        leafEnd = leaf.docBase + leaf.reader().maxDoc();
+        values = leaf.reader().getNumericDocValues(RECIPE_ID);
+      }
+
+      final int segmentDoc = doc - leaf.docBase;
+
+      if (values != null && values.advanceExact(segmentDoc)) {
+        recipeIds[position] = values.longValue();
+      } else {
+        recipeIds[position] = readStoredId(leaf.reader(), segmentDoc);
+      }
+    }
+
+    return recipeIds;
+  }
+
+  // Documents indexed before the id was written as doc values
+  // only have it as a stored field
+  private static long readStoredId(LeafReader reader, int doc) throws IOException {
+    var field = reader.document(doc, STORED_ID_ONLY).getField(RECIPE_ID);
+
+    if (field == null) {
+      throw new IllegalStateException("Document without a recipe id: " + doc);
+    }
+
+    return field.numericValue().longValue();
+  }
+}
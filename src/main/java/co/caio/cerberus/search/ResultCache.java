@@ -0,0 +1,221 @@
+package co.caio.cerberus.search;
+
+import co.caio.cerberus.model.SearchQuery;
+import co.caio.cerberus.model.SearchResult;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// A size-bounded (in bytes) cache of search results.
+//
+// Eviction is LRU, but a new entry is only admitted if it's been
+// requested more often than the entries it would push out, which keeps
+// one-off queries from flushing the popular ones (TinyLFU style).
+// Request frequencies are tracked by a small count-min sketch that
+// gets aged periodically so that yesterday's hits don't live forever.
+//
+// Every entry is tagged with the reader it was computed from and is
+// only returned for that same reader.
+//
+// A single lock guards everything: even get() mutates state (the
+// access order and the sketch), and it's only held for a few map and
+// counter operations, which is nothing next to the search a hit saves.
+class ResultCache {
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  private final long maxBytes;
+  private final FrequencySketch sketch;
+  private final LinkedHashMap<SearchQuery, Entry> entries;
+
+  private long usedBytes;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  ResultCache(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalStateException("maxBytes must be positive");
+    }
+
+    this.maxBytes = maxBytes;
+    // Assume entries of around 1KiB to size the sketch
+    this.sketch = new FrequencySketch(maxBytes / 1024);
+    this.entries = new LinkedHashMap<>(16, 0.75F, true);
+  }
+
+  // Equivalent queries should share an entry: the analyzer doesn't
+  // care about case nor about how much whitespace there is
+  static SearchQuery canonicalize(SearchQuery query) {
+    if (query.fulltext().isEmpty()) {
+      return query;
+    }
+
+    var fulltext = query.fulltext().get();
+    var normalized = WHITESPACE.matcher(fulltext.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+
+    if (normalized.equals(fulltext)) {
+      return query;
+    }
+
+    return new SearchQuery.Builder().from(query).fulltext(normalized).build();
+  }
+
+  synchronized SearchResult get(SearchQuery query, Object readerKey) {
+    sketch.increment(query.hashCode());
+
+    var entry = entries.get(query);
+    if (entry != null && entry.readerKey == readerKey) {
+      hitCount++;
+      return entry.result;
+    }
+
+    missCount++;
+    return null;
+  }
+
+  synchronized void put(SearchQuery query, Object readerKey, SearchResult result) {
+    final long weight = weigh(query, result);
+
+    if (weight > maxBytes) {
+      return;
+    }
+
+    final int frequency = sketch.frequency(query.hashCode());
+    var previous = entries.get(query);
+    long excess = usedBytes - (previous == null ? 0 : previous.weight) + weight - maxBytes;
+
+    // Pick the victims first so that a rejected entry leaves the cache
+    // untouched. Iterating doesn't count as an access
+    var victims = new ArrayList<SearchQuery>();
+    var eldest = entries.entrySet().iterator();
+    while (excess > 0) {
+      var victim = eldest.next();
+      if (victim.getKey().equals(query)) {
+        continue;
+      }
+
+      // Not popular enough to take the victim's place
+      if (sketch.frequency(victim.getKey().hashCode()) >= frequency) {
+        return;
+      }
+
+      victims.add(victim.getKey());
+      excess -= victim.getValue().weight;
+    }
+
+    if (previous != null) {
+      entries.remove(query);
+      usedBytes -= previous.weight;
+    }
+
+    for (var victim : victims) {
+      usedBytes -= entries.remove(victim).weight;
+      evictionCount++;
+    }
+
+    entries.put(query, new Entry(readerKey, result, weight));
+    usedBytes += weight;
+  }
+
+  synchronized void invalidateAll() {
+    entries.clear();
+    usedBytes = 0;
+  }
+
+  synchronized CacheStats stats() {
+    return new CacheStats(hitCount, missCount, evictionCount, entries.size(), usedBytes);
+  }
+
+  // A rough estimate of the heap taken by an entry: a fixed amount
+  // for the objects themselves plus what grows with the content
+  static long weigh(SearchQuery query, SearchResult result) {
+    long bytes = 512;
+
+    bytes += 2L * query.fulltext().map(String::length).orElse(0);
+    bytes += 2L * query.cursor().map(String::length).orElse(0);
+    bytes += 2L * result.nextCursor().map(String::length).orElse(0);
+
+    // Boxed longs plus the list slot
+    bytes += 24L * result.recipeIds().size();
+
+    for (var facet : result.facets().values()) {
+      bytes += 96 + 2L * facet.dimension().length();
+      for (var label : facet.children().keySet()) {
+        bytes += 64 + 2L * label.length();
+      }
+    }
+
+    return bytes;
+  }
+
+  private static class Entry {
+    final Object readerKey;
+    final SearchResult result;
+    final long weight;
+
+    Entry(Object readerKey, SearchResult result, long weight) {
+      this.readerKey = readerKey;
+      this.result = result;
+      this.weight = weight;
+    }
+  }
+
+  // Count-min sketch with 4 rows sharing a single table of saturating
+  // counters. Once enough increments happen every counter is halved
+  static class FrequencySketch {
+    private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final int MAX_COUNT = 15;
+
+    private final byte[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(long expectedEntries) {
+      int size = (int) Math.min(1 << 24, Math.max(1024, expectedEntries * 4));
+      size = Integer.highestOneBit(size - 1) << 1;
+
+      table = new byte[size];
+      mask = size - 1;
+      sampleSize = 10 * size;
+    }
+
+    void increment(int hash) {
+      for (int row = 0; row < SEEDS.length; row++) {
+        int index = indexOf(hash, row);
+        if (table[index] < MAX_COUNT) {
+          table[index]++;
+        }
+      }
+
+      if (++additions == sampleSize) {
+        age();
+      }
+    }
+
+    int frequency(int hash) {
+      int frequency = MAX_COUNT;
+      for (int row = 0; row < SEEDS.length; row++) {
+        frequency = Math.min(frequency, table[indexOf(hash, row)]);
+      }
+      return frequency;
+    }
+
+    private void age() {
+      for (int i = 0; i < table.length; i++) {
+        table[i] >>>= 1;
+      }
+      additions >>>= 1;
+    }
+
+    private int indexOf(int hash, int row) {
+      long h = (hash + SEEDS[row]) * SEEDS[row];
+      h += h >>> 32;
+      return ((int) h) & mask;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package co.caio.cerberus.search;
+
+import java.util.Collection;
+import org.apache.lucene.facet.RandomSamplingFacetsCollector;
+import org.apache.lucene.search.CollectorManager;
+
+// Like FacetsCollectorManager, but the reduced collector samples the
+// matching documents once there are more than sampleSize of them
+class SamplingFacetsCollectorManager
+    implements CollectorManager<RandomSamplingFacetsCollector, RandomSamplingFacetsCollector> {
+
+  private final int sampleSize;
+  private final long seed;
+
+  SamplingFacetsCollectorManager(int sampleSize, long seed) {
+    this.sampleSize = sampleSize;
+    this.seed = seed;
+  }
+
+  @Override
+  public RandomSamplingFacetsCollector newCollector() {
+    return new RandomSamplingFacetsCollector(sampleSize, seed);
+  }
+
+  @Override
+  public RandomSamplingFacetsCollector reduce(
+      Collection<RandomSamplingFacetsCollector> collectors) {
+    // Sampling only happens when the matching docs are first read, so
+    // merging every slice into a fresh collector samples them as a whole
+    var reduced = newCollector();
+    for (var collector : collectors) {
+      reduced.getOriginalMatchingDocs().addAll(collector.getOriginalMatchingDocs());
+    }
+    return reduced;
+  }
+}
@@ -0,0 +1,106 @@
+package co.caio.cerberus.search;
+
+import co.caio.cerberus.model.SearchQuery.SortOrder;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+
+// Serializes the last hit of a page so that the next page can be
+// collected with searchAfter semantics instead of collecting (and
+// throwing away) everything before it.
+// The layout is:
+//    version:byte sortOrder:byte doc:int score:float numFields:byte
+//    [tag:byte value:(int|float|long)]*
+class SearchCursor {
+
+  private static final byte VERSION = 1;
+
+  private static final byte TAG_INT = 'I';
+  private static final byte TAG_FLOAT = 'F';
+  private static final byte TAG_LONG = 'L';
+
+  private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder decoder = Base64.getUrlDecoder();
+
+  static String encode(SortOrder sortOrder, ScoreDoc last) {
+    Object[] fields = last instanceof FieldDoc ? ((FieldDoc) last).fields : new Object[0];
+
+    var buffer = ByteBuffer.allocate(1 + 1 + 4 + 4 + 1 + fields.length * (1 + 8));
+
+    buffer.put(VERSION);
+    buffer.put((byte) sortOrder.ordinal());
+    buffer.putInt(last.doc);
+    buffer.putFloat(last.score);
+    buffer.put((byte) fields.length);
+
+    for (Object field : fields) {
+      if (field instanceof Integer) {
+        buffer.put(TAG_INT).putInt((Integer) field);
+      } else if (field instanceof Float) {
+        buffer.put(TAG_FLOAT).putFloat((Float) field);
+      } else if (field instanceof Long) {
+        buffer.put(TAG_LONG).putLong((Long) field);
+      } else {
+        throw new IllegalStateException("Can't encode sort value: " + field);
+      }
+    }
+
+    return encoder.encodeToString(Arrays.copyOf(buffer.array(), buffer.position()));
+  }
+
+  static ScoreDoc decode(String cursor, SortOrder sortOrder, Sort sort) {
+    try {
+      var buffer = ByteBuffer.wrap(decoder.decode(cursor));
+
+      if (buffer.get() != VERSION) {
+        throw new IllegalStateException("Unknown cursor version");
+      }
+
+      if (buffer.get() != (byte) sortOrder.ordinal()) {
+        throw new IllegalStateException("Cursor was created for a different sort order");
+      }
+
+      int doc = buffer.getInt();
+      float score = buffer.getFloat();
+      int numFields = buffer.get();
+
+      if (sort == Sort.RELEVANCE) {
+        if (numFields != 0) {
+          throw new IllegalStateException("Invalid cursor");
+        }
+        return new ScoreDoc(doc, score);
+      }
+
+      if (numFields != sort.getSort().length) {
+        throw new IllegalStateException("Cursor does not match the sort fields");
+      }
+
+      var fields = new Object[numFields];
+      for (int i = 0; i < numFields; i++) {
+        byte tag = buffer.get();
+        if (tag == TAG_INT) {
+          fields[i] = buffer.getInt();
+        } else if (tag == TAG_FLOAT) {
+          fields[i] = buffer.getFloat();
+        } else if (tag == TAG_LONG) {
+          fields[i] = buffer.getLong();
+        } else {
+          throw new IllegalStateException("Invalid cursor");
+        }
+      }
+
+      if (buffer.hasRemaining()) {
+        throw new IllegalStateException("Invalid cursor");
+      }
+
+      return new FieldDoc(doc, score, fields);
+
+    } catch (IllegalArgumentException | BufferUnderflowException wrapped) {
+      throw new IllegalStateException("Invalid cursor", wrapped);
+    }
+  }
+}
@@ -8,4 +8,11 @@ public interface SearchPolicy {
   Query rewriteParsedSimilarityQuery(Query query);
 
   boolean shouldComputeFacets(int totalHits);
+
+  // When positive, facets for searches with more hits than this are
+  // counted over a random sample of this many hits and then scaled up,
+  // which bounds their cost. Zero means exact counts
+  default int facetSampleSize() {
+    return 0;
+  }
 }
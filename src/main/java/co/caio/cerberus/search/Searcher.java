@@ -3,6 +3,17 @@ package co.caio.cerberus.search;
 import co.caio.cerberus.model.SearchQuery;
 import co.caio.cerberus.model.SearchResult;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import org.apache.lucene.facet.range.LongRange;
+import org.apache.lucene.queries.mlt.MoreLikeThis;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.UsageTrackingQueryCachingPolicy;
 
 public interface Searcher {
 
@@ -10,26 +21,216 @@ public interface Searcher {
 
   SearchResult findSimilar(String recipeText, int maxResults);
 
+  // Recipes similar to the indexed one with the given id, which is
+  // left out of the results. Requires an index with term vectors
+  SearchResult findSimilar(long recipeId, int maxResults);
+
   int numDocs();
 
-  class Factory {
+  CacheStats resultCacheStats();
 
-    public static Searcher open(Path dir) {
+  CacheStats queryCacheStats();
+
+  // Swaps to the latest committed view of the index (and taxonomy) if
+  // there is one. Searches already running finish on the view they
+  // started with. Returns false if another refresh was in progress
+  boolean maybeRefresh();
+
+  void close();
+
+  class Builder {
+    Path dataDirectory;
+    SearchPolicy searchPolicy;
+    Duration refreshInterval;
+    ExecutorService executor;
+    int maxDocsPerSlice = 250_000;
+    int maxSegmentsPerSlice = 5;
+    int concurrentSearchThreshold = 100_000;
+    long resultCacheMaxBytes;
+    // Same sizing as Lucene's default cache, but one we own so that
+    // we can report on it
+    LRUQueryCache queryCache = new LRUQueryCache(1000, 32 * 1024 * 1024);
+    QueryCachingPolicy queryCachingPolicy = new UsageTrackingQueryCachingPolicy();
+    List<SearchQuery> precomputedFacetQueries = new ArrayList<>();
+    Map<String, LongRange[]> rangeFacets = new LinkedHashMap<>();
+    int similarityMaxQueryTerms = MoreLikeThis.DEFAULT_MAX_QUERY_TERMS;
+    int similarityMinDocFreq = MoreLikeThis.DEFAULT_MIN_DOC_FREQ;
+    int similarityMaxTokensParsed = MoreLikeThis.DEFAULT_MAX_NUM_TOKENS_PARSED;
+    Duration similarityTimeout;
+
+    public Builder dataDirectory(Path dir) {
+      dataDirectory = dir;
+      return this;
+    }
+
+    public Builder searchPolicy(SearchPolicy policy) {
+      searchPolicy = policy;
+      return this;
+    }
+
+    // When set, a background thread calls maybeRefresh() periodically
+    public Builder refreshInterval(Duration interval) {
+      if (interval.isNegative() || interval.isZero()) {
+        throw new IllegalStateException("refreshInterval must be positive");
+      }
+      refreshInterval = interval;
+      return this;
+    }
+
+    // Allows a single search to be split across segments and run
+    // in parallel (see concurrentSearchThreshold)
+    public Builder executor(ExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    // Neighbouring segments are grouped into a slice (one task per
+    // slice) until it has maxDocs documents or maxSegments segments
+    public Builder slicing(int maxDocs, int maxSegments) {
+      if (maxDocs < 1 || maxSegments < 1) {
+        throw new IllegalStateException("Slicing limits must be >= 1");
+      }
+      maxDocsPerSlice = maxDocs;
+      maxSegmentsPerSlice = maxSegments;
+      return this;
+    }
+
+    // Indices with fewer documents than this are searched on the
+    // calling thread even when an executor is configured
+    public Builder concurrentSearchThreshold(int minDocs) {
+      if (minDocs < 0) {
+        throw new IllegalStateException("concurrentSearchThreshold must be >= 0");
+      }
+      concurrentSearchThreshold = minDocs;
+      return this;
+    }
+
+    // Caches search results in memory, up to roughly maxBytes. Queries
+    // differing only on fulltext case or whitespace share an entry and
+    // everything gets invalidated when the searcher refreshes
+    public Builder resultCache(long maxBytes) {
+      if (maxBytes <= 0) {
+        throw new IllegalStateException("Result cache size must be positive");
+      }
+      resultCacheMaxBytes = maxBytes;
+      return this;
+    }
+
+    // Caches the documents matching (filter) clauses that are used often,
+    // like a "under 30 minutes" total time range. null disables it
+    public Builder queryCache(LRUQueryCache cache) {
+      queryCache = cache;
+      return this;
+    }
+
+    public Builder queryCachingPolicy(QueryCachingPolicy policy) {
+      queryCachingPolicy = policy;
+      return this;
+    }
+
+    // Hit and facet counts for the whole index are computed once per
+    // reader instead of once per request. This adds more queries to
+    // that, typically filter only ones that back listing pages
+    public Builder precomputeFacets(SearchQuery query) {
+      precomputedFacetQueries.add(query);
+      return this;
+    }
+
+    // Counts of hits per range of the numeric fields below, reported
+    // along with the other facets. Ranges may overlap, and recipes
+    // without a value for the field aren't counted in any of them
+    public Builder totalTimeRanges(LongRange... ranges) {
+      return rangeFacet(IndexField.TOTAL_TIME_DIMENSION, ranges);
+    }
+
+    public Builder caloriesRanges(LongRange... ranges) {
+      return rangeFacet(IndexField.CALORIES_DIMENSION, ranges);
+    }
 
+    public Builder numIngredientsRanges(LongRange... ranges) {
+      return rangeFacet(IndexField.NUM_INGREDIENTS_DIMENSION, ranges);
+    }
+
+    // Bounds the cost of findSimilar(): the query it runs has at most
+    // maxQueryTerms terms, picked from the first maxTokensParsed tokens
+    // of the text and skipping those in fewer than minDocFreq recipes
+    public Builder similarityMaxQueryTerms(int maxQueryTerms) {
+      if (maxQueryTerms < 1) {
+        throw new IllegalStateException("similarityMaxQueryTerms must be >= 1");
+      }
+      similarityMaxQueryTerms = maxQueryTerms;
+      return this;
+    }
+
+    public Builder similarityMinDocFreq(int minDocFreq) {
+      if (minDocFreq < 1) {
+        throw new IllegalStateException("similarityMinDocFreq must be >= 1");
+      }
+      similarityMinDocFreq = minDocFreq;
+      return this;
+    }
+
+    public Builder similarityMaxTokensParsed(int maxTokensParsed) {
+      if (maxTokensParsed < 1) {
+        throw new IllegalStateException("similarityMaxTokensParsed must be >= 1");
+      }
+      similarityMaxTokensParsed = maxTokensParsed;
+      return this;
+    }
+
+    // findSimilar() stops collecting after this long and returns the
+    // best recipes found so far, with exactTotalHits() false. The clock
+    // it uses ticks every few tens of milliseconds
+    public Builder similarityTimeout(Duration timeout) {
+      if (timeout.toMillis() < 1) {
+        throw new IllegalStateException("similarityTimeout must be at least 1ms");
+      }
+      similarityTimeout = timeout;
+      return this;
+    }
+
+    private Builder rangeFacet(String dimension, LongRange[] ranges) {
+      if (ranges.length == 0) {
+        throw new IllegalStateException("At least one range is required");
+      }
+      rangeFacets.put(dimension, ranges.clone());
+      return this;
+    }
+
+    public Searcher build() {
+      if (dataDirectory == null) {
+        throw new IllegalStateException("dataDirectory is required");
+      }
+
+      SearcherImpl searcher;
       try {
-        return new SearcherImpl(dir);
+        searcher = searchPolicy == null ? new SearcherImpl(this) : new SearcherWithPolicy(this);
       } catch (Exception wrapped) {
         throw new SearcherException(wrapped);
       }
-    }
-
-    public static Searcher open(Path dir, SearchPolicy policy) {
 
       try {
-        return new SearcherWithPolicy(dir, policy);
+        searcher.start(this);
       } catch (Exception wrapped) {
+        searcher.close();
         throw new SearcherException(wrapped);
       }
+      return searcher;
+    }
+  }
+
+  class Factory {
+
+    public static Searcher open(Path dir) {
+      return new Builder().dataDirectory(dir).build();
+    }
+
+    public static Searcher open(Path dir, SearchPolicy policy) {
+      return new Builder().dataDirectory(dir).searchPolicy(policy).build();
+    }
+
+    public static Searcher open(Path dir, ExecutorService executor) {
+      return new Builder().dataDirectory(dir).executor(executor).build();
     }
   }
 
@@ -6,153 +6,741 @@ import co.caio.cerberus.model.FacetData;
 import co.caio.cerberus.model.SearchQuery;
 import co.caio.cerberus.model.SearchQuery.SortOrder;
 import co.caio.cerberus.model.SearchResult;
+import co.caio.cerberus.search.Indexer.FacetsMode;
 import java.io.IOException;
 import java.io.StringReader;
-import java.nio.file.Path;
-import org.apache.lucene.document.Document;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.apache.lucene.document.FloatPoint;
 import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.facet.DrillDownQuery;
 import org.apache.lucene.facet.FacetResult;
 import org.apache.lucene.facet.FacetsCollector;
-import org.apache.lucene.facet.taxonomy.FastTaxonomyFacetCounts;
-import org.apache.lucene.facet.taxonomy.TaxonomyReader;
-import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
-import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.facet.FacetsCollectorManager;
+import org.apache.lucene.facet.RandomSamplingFacetsCollector;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager.SearcherAndTaxonomy;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.queries.mlt.MoreLikeThis;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.IndexSearcher.LeafSlice;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.MultiCollector;
+import org.apache.lucene.search.MultiCollectorManager;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager.RefreshListener;
+import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
-import org.apache.lucene.search.SortField.Type;
+import org.apache.lucene.search.TimeLimitingCollector;
+import org.apache.lucene.search.TimeLimitingCollector.TimeExceededException;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
 
 class SearcherImpl implements Searcher {
 
-  private static final Sort sortNumIngredients = integerSorterWithDefault(NUM_INGREDIENTS);
-  private static final Sort sortPrepTime = integerSorterWithDefault(PREP_TIME);
-  private static final Sort sortCookTime = integerSorterWithDefault(COOK_TIME);
-  private static final Sort sortTotalTime = integerSorterWithDefault(TOTAL_TIME);
-  private static final Sort sortCalories = integerSorterWithDefault(CALORIES);
-
-  private final IndexSearcher indexSearcher;
-  private final TaxonomyReader taxonomyReader;
+  // Fixed so that sampled facet counts don't change between identical
+  // requests to the same reader
+  private static final long FACET_SAMPLING_SEED = 0x5eed;
+
+  private static final Sort sortNumIngredients = sorterWithScore(SortOrder.NUM_INGREDIENTS);
+  private static final Sort sortPrepTime = sorterWithScore(SortOrder.PREP_TIME);
+  private static final Sort sortCookTime = sorterWithScore(SortOrder.COOK_TIME);
+  private static final Sort sortTotalTime = sorterWithScore(SortOrder.TOTAL_TIME);
+  private static final Sort sortCalories = sorterWithScore(SortOrder.CALORIES);
+  private static final Sort sortFatContent = sorterWithScore(SortOrder.FAT_CONTENT);
+  private static final Sort sortProteinContent = sorterWithScore(SortOrder.PROTEIN_CONTENT);
+  private static final Sort sortCarbohydrateContent =
+      sorterWithScore(SortOrder.CARBOHYDRATE_CONTENT);
+
+  private final SearcherTaxonomyManager manager;
   private final IndexConfiguration indexConfiguration;
   private final FulltextQueryParser queryParser;
-  private final MoreLikeThis moreLikeThis;
+  private final ScheduledExecutorService refresher;
+  private final ExecutorService executor;
+  private final int concurrentSearchThreshold;
+  private final ResultCache resultCache;
+  private final LRUQueryCache queryCache;
+  private final PrecomputedFacets precomputedFacets;
+  private final RangeFacets rangeFacets;
+  private final FacetCounter facetCounter;
+  private final int similarityMaxQueryTerms;
+  private final int similarityMinDocFreq;
+  private final int similarityMaxTokensParsed;
+  // In TimeLimitingCollector ticks (milliseconds). Zero means no limit
+  private final long similarityTimeoutMillis;
+
+  SearcherImpl(Searcher.Builder builder) throws IOException {
+    indexConfiguration = IndexConfiguration.fromBaseDirectory(builder.dataDirectory);
+
+    // Opens the index and the taxonomy as a pair: every view we hand
+    // out has a taxonomy that knows about all the ordinals in the index.
+    // Indices without a taxonomy get an empty one so that views look
+    // the same in both modes
+    manager =
+        new SearcherTaxonomyManager(
+            indexConfiguration.openIndexDirectory(),
+            indexConfiguration.getFacetsMode() == FacetsMode.TAXONOMY
+                ? indexConfiguration.openTaxonomyDirectory()
+                : emptyTaxonomyDirectory(),
+            searcherFactory(builder));
+    facetCounter = FacetCounter.create(indexConfiguration);
 
-  SearcherImpl(Path dir) throws IOException {
-    indexConfiguration = IndexConfiguration.fromBaseDirectory(dir);
+    queryParser = new FulltextQueryParser(indexConfiguration.getAnalyzer());
 
-    var indexReader = DirectoryReader.open(indexConfiguration.openIndexDirectory());
+    queryCache = builder.queryCache;
+    rangeFacets = new RangeFacets(Map.copyOf(builder.rangeFacets));
+    executor = builder.executor;
+    concurrentSearchThreshold = builder.concurrentSearchThreshold;
+    similarityMaxQueryTerms = builder.similarityMaxQueryTerms;
+    similarityMinDocFreq = builder.similarityMinDocFreq;
+    similarityMaxTokensParsed = builder.similarityMaxTokensParsed;
+    similarityTimeoutMillis =
+        builder.similarityTimeout == null ? 0 : builder.similarityTimeout.toMillis();
+
+    precomputedFacets =
+        new PrecomputedFacets(
+            List.copyOf(builder.precomputedFacetQueries),
+            this::toLuceneQuery,
+            facetCounter,
+            rangeFacets);
+    manager.addListener(
+        new RefreshListener() {
+          @Override
+          public void beforeRefresh() {}
+
+          @Override
+          public void afterRefresh(boolean didRefresh) throws IOException {
+            // Have the counts ready before requests ask for them
+            if (didRefresh) {
+              var current = manager.acquire();
+              try {
+                precomputedFacets.update(current);
+              } finally {
+                manager.release(current);
+              }
+            }
+          }
+        });
+    if (builder.resultCacheMaxBytes > 0) {
+      resultCache = new ResultCache(builder.resultCacheMaxBytes);
+      manager.addListener(
+          new RefreshListener() {
+            @Override
+            public void beforeRefresh() {}
+
+            @Override
+            public void afterRefresh(boolean didRefresh) {
+              // Entries are tied to the reader they came from, so
+              // they can't ever be served again
+              if (didRefresh) {
+                resultCache.invalidateAll();
+              }
+            }
+          });
+    } else {
+      resultCache = null;
+    }
 
-    this.indexSearcher = new IndexSearcher(indexReader);
-    this.taxonomyReader = new DirectoryTaxonomyReader(indexConfiguration.openTaxonomyDirectory());
+    if (builder.refreshInterval != null) {
+      refresher =
+          Executors.newSingleThreadScheduledExecutor(
+              runnable -> {
+                var thread = new Thread(runnable, "cerberus-searcher-refresh");
+                thread.setDaemon(true);
+                return thread;
+              });
+    } else {
+      refresher = null;
+    }
+  }
 
-    queryParser = new FulltextQueryParser(indexConfiguration.getAnalyzer());
-    moreLikeThis = new MoreLikeThis(indexReader);
-    moreLikeThis.setAnalyzer(indexConfiguration.getAnalyzer());
+  // Everything that parses queries, which subclasses may override, so
+  // it can't happen in the constructor. Called by Searcher.Builder
+  void start(Searcher.Builder builder) throws IOException {
+    // Counts for the view we start with, so that the first searches
+    // don't have to wait for them
+    var initial = manager.acquire();
+    try {
+      precomputedFacets.update(initial);
+    } finally {
+      manager.release(initial);
+    }
+
+    if (refresher != null) {
+      var intervalMillis = builder.refreshInterval.toMillis();
+      refresher.scheduleWithFixedDelay(
+          this::backgroundRefresh, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
   }
 
-  private static Sort integerSorterWithDefault(String fieldName) {
-    var field = new SortField(fieldName, Type.INT);
-    field.setMissingValue(Integer.MAX_VALUE);
-    return new Sort(field, SortField.FIELD_SCORE);
+  private static Directory emptyTaxonomyDirectory() throws IOException {
+    var directory = new ByteBuffersDirectory();
+    new DirectoryTaxonomyWriter(directory).close();
+    return directory;
+  }
+
+  // Lets Lucene decide per segment whether to walk the points (when the
+  // range is what drives the search) or to check the doc values of the
+  // candidates another clause yields
+  static IndexOrDocValuesQuery intRangeQuery(String field, int start, int end) {
+    return new IndexOrDocValuesQuery(
+        IntPoint.newRangeQuery(field, start, end),
+        NumericDocValuesField.newSlowRangeQuery(field, start, end));
+  }
+
+  // Float doc values hold the raw bits of the value, which order the same
+  // way as the floats themselves as long as they are not negative (and
+  // ranges never start below zero)
+  static IndexOrDocValuesQuery floatRangeQuery(String field, float start, float end) {
+    assert start >= 0;
+    return new IndexOrDocValuesQuery(
+        FloatPoint.newRangeQuery(field, start, end),
+        NumericDocValuesField.newSlowRangeQuery(
+            field, Float.floatToRawIntBits(start), Float.floatToRawIntBits(end)));
+  }
+
+  private static Sort sorterWithScore(SortOrder sortOrder) {
+    return new Sort(IndexConfiguration.sortField(sortOrder), SortField.FIELD_SCORE);
   }
 
   public SearchResult search(SearchQuery query) {
     try {
-      return _search(query);
+      var current = manager.acquire();
+      try {
+        if (resultCache == null) {
+          return _search(current, query);
+        }
+
+        var canonical = ResultCache.canonicalize(query);
+        var readerKey = current.searcher.getIndexReader().getReaderCacheHelper().getKey();
+
+        var result = resultCache.get(canonical, readerKey);
+        if (result == null) {
+          result = _search(current, canonical);
+          resultCache.put(canonical, readerKey, result);
+        }
+
+        return result;
+      } finally {
+        manager.release(current);
+      }
     } catch (IOException wrapped) {
       throw new SearcherException(wrapped);
     }
   }
 
+  @Override
+  public CacheStats resultCacheStats() {
+    return resultCache == null ? CacheStats.EMPTY : resultCache.stats();
+  }
+
+  @Override
+  public CacheStats queryCacheStats() {
+    if (queryCache == null) {
+      return CacheStats.EMPTY;
+    }
+    return new CacheStats(
+        queryCache.getHitCount(),
+        queryCache.getMissCount(),
+        queryCache.getEvictionCount(),
+        queryCache.getCacheSize(),
+        queryCache.ramBytesUsed());
+  }
+
   @Override
   public SearchResult findSimilar(String recipeText, int maxResults) {
     try {
-      var query = parseSimilarity(recipeText);
-      var result = indexSearcher.search(query, maxResults);
+      var current = manager.acquire();
+      try {
+        return _findSimilar(current.searcher, recipeText, maxResults);
+      } finally {
+        manager.release(current);
+      }
+    } catch (IOException wrapped) {
+      throw new SearcherException(wrapped);
+    }
+  }
 
-      var builder = new SearchResult.Builder().totalHits(result.totalHits.value);
+  @Override
+  public SearchResult findSimilar(long recipeId, int maxResults) {
+    if (!indexConfiguration.hasTermVectors()) {
+      throw new IllegalStateException("Finding similar recipes by id requires term vectors");
+    }
 
-      for (int i = 0; i < result.scoreDocs.length; i++) {
-        Document doc = indexSearcher.doc(result.scoreDocs[i].doc);
-        builder.addRecipe(doc.getField(RECIPE_ID).numericValue().longValue());
+    try {
+      var current = manager.acquire();
+      try {
+        return _findSimilar(current.searcher, recipeId, maxResults);
+      } finally {
+        manager.release(current);
       }
+    } catch (IOException wrapped) {
+      throw new SearcherException(wrapped);
+    }
+  }
 
-      return builder.build();
+  @Override
+  public boolean maybeRefresh() {
+    try {
+      return manager.maybeRefresh();
     } catch (IOException wrapped) {
       throw new SearcherException(wrapped);
     }
   }
 
-  Query parseSimilarity(String recipeText) {
+  private void backgroundRefresh() {
     try {
-      return moreLikeThis.like(FULL_RECIPE, new StringReader(recipeText));
+      manager.maybeRefresh();
+    } catch (Exception ignored) {
+      // Keep serving the current view, the next run will retry.
+      // An exception escaping here would cancel every future run
+    }
+  }
+
+  @Override
+  public void close() {
+    if (refresher != null) {
+      refresher.shutdownNow();
+    }
+
+    try {
+      manager.close();
     } catch (IOException wrapped) {
       throw new SearcherException(wrapped);
     }
   }
 
+  private SearchResult _findSimilar(IndexSearcher indexSearcher, String recipeText, int maxResults)
+      throws IOException {
+    var query = parseSimilarity(recipeText, indexSearcher.getIndexReader());
+    return similarResult(indexSearcher, query, maxResults);
+  }
+
+  private SearchResult _findSimilar(IndexSearcher indexSearcher, long recipeId, int maxResults)
+      throws IOException {
+    var idQuery = LongPoint.newExactQuery(RECIPE_ID, recipeId);
+    var source = indexSearcher.search(idQuery, 1);
+    if (source.scoreDocs.length == 0) {
+      return new SearchResult.Builder().build();
+    }
+
+    var query =
+        new BooleanQuery.Builder()
+            .add(
+                parseSimilarity(source.scoreDocs[0].doc, indexSearcher.getIndexReader()),
+                Occur.MUST)
+            .add(idQuery, Occur.MUST_NOT)
+            .build();
+    return similarResult(indexSearcher, query, maxResults);
+  }
+
+  private SearchResult similarResult(IndexSearcher indexSearcher, Query query, int maxResults)
+      throws IOException {
+    TopDocs result;
+    boolean exact = true;
+
+    if (similarityTimeoutMillis > 0) {
+      var collector = TopScoreDocCollector.create(maxResults, Integer.MAX_VALUE);
+      try {
+        indexSearcher.search(
+            query,
+            new TimeLimitingCollector(
+                collector, TimeLimitingCollector.getGlobalCounter(), similarityTimeoutMillis));
+      } catch (TimeExceededException e) {
+        // Better to show what we have than to hold the page back
+        exact = false;
+      }
+      result = collector.topDocs();
+    } else {
+      // Stops counting after a while, so totalHits may be a lower bound
+      result = indexSearcher.search(query, maxResults);
+    }
+
+    var builder =
+        new SearchResult.Builder()
+            .totalHits(result.totalHits.value)
+            .exactTotalHits(exact && result.totalHits.relation == TotalHits.Relation.EQUAL_TO);
+
+    for (long recipeId :
+        RecipeIdResolver.resolve(indexSearcher.getIndexReader(), result.scoreDocs, 0)) {
+      builder.addRecipe(recipeId);
+    }
+
+    return builder.build();
+  }
+
+  Query parseSimilarity(String recipeText, IndexReader reader) {
+    try {
+      return newMoreLikeThis(reader).like(FULL_RECIPE, new StringReader(recipeText));
+    } catch (IOException wrapped) {
+      throw new SearcherException(wrapped);
+    }
+  }
+
+  // Same as above, but the terms come from the stored term vector of the
+  // given document instead of from analyzing its text again
+  Query parseSimilarity(int docId, IndexReader reader) {
+    try {
+      return newMoreLikeThis(reader).like(docId);
+    } catch (IOException wrapped) {
+      throw new SearcherException(wrapped);
+    }
+  }
+
+  // MoreLikeThis is mutable and bound to a reader, so every call gets
+  // its own instead of sharing one across threads and refreshes
+  private MoreLikeThis newMoreLikeThis(IndexReader reader) {
+    var moreLikeThis = new MoreLikeThis(reader);
+    moreLikeThis.setFieldNames(new String[] {FULL_RECIPE});
+    moreLikeThis.setAnalyzer(indexConfiguration.getAnalyzer());
+    moreLikeThis.setMaxQueryTerms(similarityMaxQueryTerms);
+    moreLikeThis.setMinDocFreq(similarityMinDocFreq);
+    moreLikeThis.setMaxNumTokensParsed(similarityMaxTokensParsed);
+    return moreLikeThis;
+  }
+
   public int numDocs() {
-    return indexSearcher.getIndexReader().numDocs();
+    try {
+      var current = manager.acquire();
+      try {
+        return current.searcher.getIndexReader().numDocs();
+      } finally {
+        manager.release(current);
+      }
+    } catch (IOException wrapped) {
+      throw new SearcherException(wrapped);
+    }
   }
 
-  private SearchResult _search(SearchQuery query) throws IOException {
+  private SearchResult _search(SearcherAndTaxonomy current, SearchQuery query) throws IOException {
+    final var indexSearcher = current.searcher;
     final int maxFacets = query.maxFacets();
 
-    var luceneQuery = indexSearcher.rewrite(toLuceneQuery(query));
+    final var drillDownQuery = toLuceneQuery(query);
+    var luceneQuery = indexSearcher.rewrite(drillDownQuery);
+
+    // A single pass over the matches gives us the exact hit count, the
+    // top docs and, if asked for, the bitsets needed to count facets
+    final var sort = toLuceneSort(query.sort());
+    final var after =
+        query.cursor().map(cursor -> SearchCursor.decode(cursor, query.sort(), sort)).orElse(null);
+
+    final int numHits = query.offset() + query.maxResults();
+
+    // Multi select dimensions need the whole search to go through
+    // DrillSideways, which counts them without their own filter
+    final boolean drillSideways =
+        maxFacets > 0
+            && query.facetFilters().keySet().stream()
+                .anyMatch(query.multiSelectDimensions()::contains);
+
+    // Known hit and facet counts, so we only need to find the top docs
+    final var precomputed = drillSideways ? null : precomputedFacets.get(current, luceneQuery);
+    final boolean collectFacets = maxFacets > 0 && precomputed == null;
+
+    // Facets have to see every hit anyway, so counting them all is free
+    final int totalHitsThreshold;
+    if (precomputed != null) {
+      totalHitsThreshold = numHits;
+    } else if (query.exactTotalHits() || collectFacets) {
+      totalHitsThreshold = Integer.MAX_VALUE;
+    } else {
+      totalHitsThreshold = query.totalHitsThreshold().orElse(numHits);
+    }
+
+    var topDocsManager =
+        new TopDocsCollectorManager(
+            indexSearcher.getIndexReader(), sort, after, numHits, totalHitsThreshold);
 
-    final int count = indexSearcher.count(luceneQuery);
-    final boolean computeFacets = maxFacets > 0 && canComputeFacets(count);
+    // Zero means exact counts. DrillSideways can't sample
+    final int facetSampleSize = drillSideways ? 0 : facetSampleSize();
 
-    var builder = new SearchResult.Builder().totalHits(count);
     TopDocs result;
+    FacetsCollector fc = null;
+    // Only the multi select dimensions
+    final var sidewaysCollectors = new HashMap<String, FacetsCollector>();
+
+    if (drillSideways) {
+      var topDocsCollector = topDocsManager.newCollector();
+      var sideways =
+          new CollectingDrillSideways(
+              indexSearcher, indexConfiguration.getFacetsConfig(), current.taxonomyReader);
+      sideways.search((DrillDownQuery) drillDownQuery, topDocsCollector);
+
+      result = topDocsCollector.topDocs();
+      fc = sideways.drillDowns;
+      sideways.drillSideways.forEach(
+          (dimension, collector) -> {
+            if (query.multiSelectDimensions().contains(dimension)) {
+              sidewaysCollectors.put(dimension, collector);
+            }
+          });
+    } else if (shouldSearchConcurrently(indexSearcher)) {
+      if (collectFacets) {
+        var reduced =
+            indexSearcher.search(
+                luceneQuery,
+                new MultiCollectorManager(
+                    topDocsManager,
+                    facetSampleSize > 0
+                        ? new SamplingFacetsCollectorManager(facetSampleSize, FACET_SAMPLING_SEED)
+                        : new FacetsCollectorManager()));
+        result = (TopDocs) reduced[0];
+        fc = (FacetsCollector) reduced[1];
+      } else {
+        result = indexSearcher.search(luceneQuery, topDocsManager);
+      }
+    } else {
+      var topDocsCollector = topDocsManager.newCollector();
+
+      if (collectFacets) {
+        fc =
+            facetSampleSize > 0
+                ? new RandomSamplingFacetsCollector(facetSampleSize, FACET_SAMPLING_SEED)
+                : new FacetsCollector();
+        indexSearcher.search(luceneQuery, MultiCollector.wrap(topDocsCollector, fc));
+      } else {
+        indexSearcher.search(luceneQuery, topDocsCollector);
+      }
 
-    if (computeFacets) {
-      var fc = new FacetsCollector();
+      result = topDocsCollector.topDocs();
+    }
+
+    final int count =
+        precomputed != null ? precomputed.totalHits : Math.toIntExact(result.totalHits.value);
 
-      result =
-          FacetsCollector.search(
-              indexSearcher,
-              luceneQuery,
-              query.offset() + query.maxResults(),
-              toLuceneSort(query.sort()),
-              fc);
+    var builder =
+        new SearchResult.Builder()
+            .totalHits(count)
+            .exactTotalHits(
+                precomputed != null || result.totalHits.relation == TotalHits.Relation.EQUAL_TO);
 
-      var staticFacets =
-          new FastTaxonomyFacetCounts(taxonomyReader, indexConfiguration.getFacetsConfig(), fc);
+    if (maxFacets > 0 && precomputed != null && canComputeFacets(count)) {
+      for (var fr : precomputed.facets.getAllDims(maxFacets)) {
+        addFacetData(builder, fr, false);
+      }
 
-      staticFacets.getAllDims(maxFacets).forEach(fr -> addFacetData(builder, fr));
+      var diets =
+          query.dietThresholds().isEmpty()
+              ? precomputed.diets
+              : facetCounter.countDiets(current, query.dietThresholds(), precomputed.collector);
+      addFacetData(builder, diets.getTopChildren(maxFacets, DIETS_DIMENSION), false);
 
-    } else {
-      result =
-          indexSearcher.search(
-              luceneQuery, query.offset() + query.maxResults(), toLuceneSort(query.sort()));
+      for (var fr : precomputed.ranges) {
+        addFacetData(builder, fr, false);
+      }
+
+      addDietHistograms(builder, current, query, precomputed.collector, 1);
+    } else if (fc != null && canComputeFacets(count)) {
+      // The sampling collector only samples when there are more hits
+      // than the sample size, otherwise the counts are exact
+      final boolean sampled = facetSampleSize > 0 && count > facetSampleSize;
+
+      // Sampling only happens on the first getMatchingDocs() call, and
+      // the rate isn't known before that
+      double samplingRate = 1;
+      if (sampled) {
+        var samplingCollector = (RandomSamplingFacetsCollector) fc;
+        samplingCollector.getMatchingDocs();
+        samplingRate = samplingCollector.getSamplingRate();
+      }
+
+      for (var fr : facetCounter.countCategories(current, fc).getAllDims(maxFacets)) {
+        if (sidewaysCollectors.containsKey(fr.dim)) {
+          continue;
+        }
+        if (sampled) {
+          fr =
+              ((RandomSamplingFacetsCollector) fc)
+                  .amortizeFacetCounts(fr, indexConfiguration.getFacetsConfig(), indexSearcher);
+        }
+        addFacetData(builder, fr, sampled);
+      }
+
+      for (var entry : sidewaysCollectors.entrySet()) {
+        // Counting every dimension is as expensive as counting just
+        // one, and unlike getTopChildren() it doesn't throw for
+        // dimensions that were never indexed
+        for (var fr :
+            facetCounter.countCategories(current, entry.getValue()).getAllDims(maxFacets)) {
+          if (fr.dim.equals(entry.getKey())) {
+            addFacetData(builder, fr, false);
+          }
+        }
+      }
+
+      // Amortizing needs the drill down terms of each label, which ranges
+      // (and diets without a taxonomy) don't have, so these get scaled
+      addFacetData(
+          builder,
+          facetCounter
+              .countDiets(current, query.dietThresholds(), fc)
+              .getTopChildren(maxFacets, DIETS_DIMENSION),
+          sampled,
+          samplingRate);
+
+      for (var fr : rangeFacets.compute(fc)) {
+        addFacetData(builder, fr, sampled, samplingRate);
+      }
+
+      addDietHistograms(builder, current, query, fc, samplingRate);
     }
 
-    for (int i = query.offset(); i < result.scoreDocs.length; i++) {
-      Document doc = indexSearcher.doc(result.scoreDocs[i].doc);
-      builder.addRecipe(doc.getField(RECIPE_ID).numericValue().longValue());
+    for (long recipeId :
+        RecipeIdResolver.resolve(
+            indexSearcher.getIndexReader(), result.scoreDocs, query.offset())) {
+      builder.addRecipe(recipeId);
+    }
+
+    // A full page means there might be more hits after it
+    if (result.scoreDocs.length > query.offset()
+        && result.scoreDocs.length - query.offset() == query.maxResults()) {
+      var last = result.scoreDocs[result.scoreDocs.length - 1];
+      builder.nextCursor(SearchCursor.encode(query.sort(), last));
     }
 
     return builder.build();
   }
 
+  // Fanning out only pays off when there's a lot to collect: small
+  // indices stay on the caller's thread so that latency isn't eaten by
+  // task hand-offs. Estimating how much a query matches instead would
+  // mean building its Weight twice for every search
+  private boolean shouldSearchConcurrently(IndexSearcher indexSearcher) {
+    return executor != null
+        && indexSearcher.getSlices().length > 1
+        && indexSearcher.getIndexReader().maxDoc() >= concurrentSearchThreshold;
+  }
+
+  private static SearcherFactory searcherFactory(Searcher.Builder builder) {
+    final var executor = builder.executor;
+    final int maxDocsPerSlice = builder.maxDocsPerSlice;
+    final int maxSegmentsPerSlice = builder.maxSegmentsPerSlice;
+    final var queryCache = builder.queryCache;
+    final var queryCachingPolicy = builder.queryCachingPolicy;
+
+    return new SearcherFactory() {
+      @Override
+      public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) {
+        IndexSearcher searcher;
+
+        if (executor == null) {
+          searcher = new IndexSearcher(reader);
+        } else {
+          searcher =
+              new IndexSearcher(reader, executor) {
+                @Override
+                protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+                  return contiguousSlices(leaves, maxDocsPerSlice, maxSegmentsPerSlice);
+                }
+              };
+        }
+
+        // The cache is keyed by segment, so sharing it between every
+        // searcher we create means that refreshing doesn't lose the
+        // entries for segments that didn't change
+        searcher.setQueryCache(queryCache);
+        searcher.setQueryCachingPolicy(queryCachingPolicy);
+
+        return searcher;
+      }
+    };
+  }
+
+  // The default is one slice per segment, which means lots of tiny
+  // tasks for indices with many small segments. Instead we group
+  // neighbouring segments until a slice is big enough
+  static LeafSlice[] contiguousSlices(
+      List<LeafReaderContext> leaves, int maxDocsPerSlice, int maxSegmentsPerSlice) {
+    var slices = new ArrayList<LeafSlice>();
+    var current = new ArrayList<LeafReaderContext>();
+    long currentDocs = 0;
+
+    for (LeafReaderContext leaf : leaves) {
+      current.add(leaf);
+      currentDocs += leaf.reader().maxDoc();
+
+      if (currentDocs >= maxDocsPerSlice || current.size() >= maxSegmentsPerSlice) {
+        slices.add(new LeafSlice(current.toArray(new LeafReaderContext[0])));
+        current.clear();
+        currentDocs = 0;
+      }
+    }
+
+    if (!current.isEmpty()) {
+      slices.add(new LeafSlice(current.toArray(new LeafReaderContext[0])));
+    }
+
+    return slices.toArray(new LeafSlice[0]);
+  }
+
   boolean canComputeFacets(int unused) {
     return true;
   }
 
-  private void addFacetData(SearchResult.Builder sb, FacetResult fr) {
+  private void addDietHistograms(
+      SearchResult.Builder builder,
+      SearcherAndTaxonomy current,
+      SearchQuery query,
+      FacetsCollector fc,
+      double samplingRate)
+      throws IOException {
+    if (query.dietHistogramThresholds().isEmpty()) {
+      return;
+    }
+
+    var thresholds = new float[query.dietHistogramThresholds().size()];
+    for (int i = 0; i < thresholds.length; i++) {
+      thresholds[i] = query.dietHistogramThresholds().get(i);
+    }
+
+    facetCounter
+        .dietHistograms(current, thresholds, fc)
+        .forEach(
+            (diet, counts) -> {
+              var scaled = new ArrayList<Long>(counts.length);
+              for (int count : counts) {
+                scaled.add(Math.round(count / samplingRate));
+              }
+              builder.putDietHistograms(diet, scaled);
+            });
+  }
+
+  int facetSampleSize() {
+    return 0;
+  }
+
+  private void addFacetData(SearchResult.Builder sb, FacetResult fr, boolean approximate) {
+    addFacetData(sb, fr, approximate, 1);
+  }
+
+  private void addFacetData(
+      SearchResult.Builder sb, FacetResult fr, boolean approximate, double samplingRate) {
     if (fr == null) {
       return;
     }
 
-    var facetDataBuilder = new FacetData.Builder().dimension(fr.dim);
+    var facetDataBuilder = new FacetData.Builder().dimension(fr.dim).approximate(approximate);
     for (int i = 0; i < fr.labelValues.length; i++) {
-      facetDataBuilder.putChildren(fr.labelValues[i].label, fr.labelValues[i].value.longValue());
+      facetDataBuilder.putChildren(
+          fr.labelValues[i].label, Math.round(fr.labelValues[i].value.longValue() / samplingRate));
     }
     sb.putFacets(fr.dim, facetDataBuilder.build());
   }
@@ -162,6 +750,13 @@ class SearcherImpl implements Searcher {
   }
 
   Sort toLuceneSort(SortOrder sortOrder) {
+    // Hits come out of a sorted index already in order, so we skip the
+    // score tie-break: a sort that is a prefix of the index sort is what
+    // lets the collector stop early
+    if (sortOrder != SortOrder.RELEVANCE && sortOrder == indexConfiguration.getIndexSortOrder()) {
+      return indexConfiguration.getIndexSort();
+    }
+
     switch (sortOrder) {
       case RELEVANCE:
         return Sort.RELEVANCE;
@@ -175,6 +770,12 @@ class SearcherImpl implements Searcher {
         return sortTotalTime;
       case CALORIES:
         return sortCalories;
+      case FAT_CONTENT:
+        return sortFatContent;
+      case PROTEIN_CONTENT:
+        return sortProteinContent;
+      case CARBOHYDRATE_CONTENT:
+        return sortCarbohydrateContent;
       default:
         throw new IllegalStateException(String.format("Unhandled sort order: %s", sortOrder));
     }
@@ -183,6 +784,10 @@ class SearcherImpl implements Searcher {
   Query toLuceneQuery(SearchQuery searchQuery) {
     var queryBuilder = new BooleanQuery.Builder();
 
+    // Only the fulltext part takes part in scoring. Everything else is
+    // a FILTER clause: it doesn't score and its matches can be cached
+    // by the query cache
+
     searchQuery
         .fulltext()
         .ifPresent(fulltext -> queryBuilder.add(parseFulltext(fulltext), Occur.MUST));
@@ -192,69 +797,82 @@ class SearcherImpl implements Searcher {
         .ifPresent(
             range ->
                 queryBuilder.add(
-                    IntPoint.newRangeQuery(NUM_INGREDIENTS, range.start(), range.end()),
-                    Occur.MUST));
+                    intRangeQuery(NUM_INGREDIENTS, range.start(), range.end()), Occur.FILTER));
 
     searchQuery
         .cookTime()
         .ifPresent(
             range ->
                 queryBuilder.add(
-                    IntPoint.newRangeQuery(COOK_TIME, range.start(), range.end()), Occur.MUST));
+                    intRangeQuery(COOK_TIME, range.start(), range.end()), Occur.FILTER));
 
     searchQuery
         .prepTime()
         .ifPresent(
             range ->
                 queryBuilder.add(
-                    IntPoint.newRangeQuery(PREP_TIME, range.start(), range.end()), Occur.MUST));
+                    intRangeQuery(PREP_TIME, range.start(), range.end()), Occur.FILTER));
 
     searchQuery
         .totalTime()
         .ifPresent(
             range ->
                 queryBuilder.add(
-                    IntPoint.newRangeQuery(TOTAL_TIME, range.start(), range.end()), Occur.MUST));
+                    intRangeQuery(TOTAL_TIME, range.start(), range.end()), Occur.FILTER));
 
     searchQuery
         .calories()
         .ifPresent(
             range ->
                 queryBuilder.add(
-                    IntPoint.newRangeQuery(CALORIES, range.start(), range.end()), Occur.MUST));
+                    intRangeQuery(CALORIES, range.start(), range.end()), Occur.FILTER));
 
     searchQuery
         .fatContent()
         .ifPresent(
             range ->
                 queryBuilder.add(
-                    FloatPoint.newRangeQuery(FAT_CONTENT, range.start(), range.end()), Occur.MUST));
+                    floatRangeQuery(FAT_CONTENT, range.start(), range.end()), Occur.FILTER));
 
     searchQuery
         .proteinContent()
         .ifPresent(
             range ->
                 queryBuilder.add(
-                    FloatPoint.newRangeQuery(PROTEIN_CONTENT, range.start(), range.end()),
-                    Occur.MUST));
+                    floatRangeQuery(PROTEIN_CONTENT, range.start(), range.end()), Occur.FILTER));
 
     searchQuery
         .carbohydrateContent()
         .ifPresent(
             range ->
                 queryBuilder.add(
-                    FloatPoint.newRangeQuery(CARBOHYDRATE_CONTENT, range.start(), range.end()),
-                    Occur.MUST));
+                    floatRangeQuery(CARBOHYDRATE_CONTENT, range.start(), range.end()),
+                    Occur.FILTER));
 
     searchQuery
         .diet()
         .ifPresent(
             (diet) ->
                 queryBuilder.add(
-                    FloatPoint.newRangeQuery(
+                    floatRangeQuery(
                         getFieldNameForDiet(diet.name()), diet.threshold(), Float.MAX_VALUE),
-                    Occur.MUST));
+                    Occur.FILTER));
+
+    if (searchQuery.facetFilters().isEmpty()) {
+      return queryBuilder.build();
+    }
+
+    // Labels of the same dimension are OR'ed together. Also FILTER
+    // clauses once rewritten. Without a base query they filter every
+    // recipe instead of matching nothing like an empty BooleanQuery
+    var baseQuery = queryBuilder.build();
+    var drillDown =
+        new DrillDownQuery(
+            indexConfiguration.getFacetsConfig(), baseQuery.clauses().isEmpty() ? null : baseQuery);
+    searchQuery
+        .facetFilters()
+        .forEach((dimension, labels) -> labels.forEach(label -> drillDown.add(dimension, label)));
 
-    return queryBuilder.build();
+    return drillDown;
   }
 }
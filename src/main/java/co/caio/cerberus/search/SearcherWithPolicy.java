@@ -1,16 +1,16 @@
 package co.caio.cerberus.search;
 
 import java.io.IOException;
-import java.nio.file.Path;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.Query;
 
 class SearcherWithPolicy extends SearcherImpl implements Searcher {
 
   private final SearchPolicy searchPolicy;
 
-  SearcherWithPolicy(Path dir, SearchPolicy policy) throws IOException {
-    super(dir);
-    searchPolicy = policy;
+  SearcherWithPolicy(Searcher.Builder builder) throws IOException {
+    super(builder);
+    searchPolicy = builder.searchPolicy;
   }
 
   @Override
@@ -18,6 +18,11 @@ class SearcherWithPolicy extends SearcherImpl implements Searcher {
     return searchPolicy.shouldComputeFacets(totalHits);
   }
 
+  @Override
+  int facetSampleSize() {
+    return searchPolicy.facetSampleSize();
+  }
+
   @Override
   Query parseFulltext(String fulltext) {
     var parsed = super.parseFulltext(fulltext);
@@ -25,8 +30,14 @@ class SearcherWithPolicy extends SearcherImpl implements Searcher {
   }
 
   @Override
-  Query parseSimilarity(String similarText) {
-    var parsed = super.parseSimilarity(similarText);
+  Query parseSimilarity(String similarText, IndexReader reader) {
+    var parsed = super.parseSimilarity(similarText, reader);
+    return searchPolicy.rewriteParsedSimilarityQuery(parsed);
+  }
+
+  @Override
+  Query parseSimilarity(int docId, IndexReader reader) {
+    var parsed = super.parseSimilarity(docId, reader);
     return searchPolicy.rewriteParsedSimilarityQuery(parsed);
   }
 }
@@ -0,0 +1,79 @@
+package co.caio.cerberus.search;
+
+import co.caio.cerberus.model.Recipe;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+public interface Suggester {
+
+  // Recipe names and ingredients starting with the given text, the ones
+  // appearing in more recipes first
+  List<String> suggest(String prefix, int maxResults);
+
+  // Size of the in-memory lookup structure
+  long ramBytesUsed();
+
+  class Factory {
+    public static Suggester open(Path dir) {
+      try {
+        return new SuggesterImpl(IndexConfiguration.fromBaseDirectory(dir));
+      } catch (Exception wrapped) {
+        throw new SuggesterException(wrapped);
+      }
+    }
+  }
+
+  // Builds the suggestions for the index at the given directory. It
+  // should be fed the same recipes as the Indexer, and replaces any
+  // previously built suggestions when closed
+  class Writer {
+    private final IndexConfiguration indexConfiguration;
+    // Suggestion to how many recipes it appears in
+    private final Map<String, Long> weights = new HashMap<>();
+
+    public Writer(Path dir) {
+      try {
+        indexConfiguration = IndexConfiguration.fromBaseDirectory(dir);
+      } catch (IOException wrapped) {
+        throw new SuggesterException(wrapped);
+      }
+    }
+
+    public void addRecipe(Recipe recipe) {
+      // XXX Not thread safe
+      var suggestions = new HashSet<String>();
+
+      var name = SuggesterImpl.normalizeName(recipe.name());
+      if (!name.isEmpty()) {
+        suggestions.add(name);
+      }
+
+      for (var ingredient : recipe.ingredients()) {
+        var normalized = SuggesterImpl.normalizeIngredient(ingredient);
+        if (!normalized.isEmpty()) {
+          suggestions.add(normalized);
+        }
+      }
+
+      suggestions.forEach(s -> weights.merge(s, 1L, Long::sum));
+    }
+
+    public void close() {
+      try {
+        SuggesterImpl.write(indexConfiguration, weights);
+      } catch (IOException wrapped) {
+        throw new SuggesterException(wrapped);
+      }
+    }
+  }
+
+  class SuggesterException extends RuntimeException {
+    SuggesterException(Exception e) {
+      super(e);
+    }
+  }
+}
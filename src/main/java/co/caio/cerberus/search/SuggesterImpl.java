@@ -0,0 +1,221 @@
+package co.caio.cerberus.search;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingSuggester;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.BytesRef;
+
+class SuggesterImpl implements Suggester {
+  private static final String LOOKUP_NAME = "lookup.fst";
+  private static final String LOOKUP_TMP_NAME = "lookup.fst.tmp";
+
+  // Longer than this is not something people type in a search box
+  private static final int MAX_SUGGESTION_LENGTH = 64;
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final Pattern PARENTHESES = Pattern.compile("\\([^)]*\\)");
+  // "12", "1/2", "1\u00bd", "2-3"
+  private static final Pattern QUANTITY = Pattern.compile("[\\d/.\\-\u00bc-\u00be\u2150-\u215e]+");
+  private static final Set<String> MEASURES =
+      Set.of(
+          "of",
+          "cup",
+          "cups",
+          "tablespoon",
+          "tablespoons",
+          "tbsp",
+          "teaspoon",
+          "teaspoons",
+          "tsp",
+          "pound",
+          "pounds",
+          "lb",
+          "lbs",
+          "ounce",
+          "ounces",
+          "oz",
+          "g",
+          "grams",
+          "kg",
+          "ml",
+          "l",
+          "liter",
+          "liters",
+          "quart",
+          "quarts",
+          "pint",
+          "pints",
+          "pinch",
+          "dash",
+          "clove",
+          "cloves",
+          "bunch",
+          "can",
+          "cans",
+          "package",
+          "packages",
+          "slice",
+          "slices",
+          "stick",
+          "sticks",
+          "sprig",
+          "sprigs",
+          "large",
+          "medium",
+          "small");
+
+  // Null when the writer had nothing to suggest
+  private final AnalyzingSuggester lookup;
+
+  SuggesterImpl(IndexConfiguration indexConfiguration) throws IOException {
+    try (var directory = indexConfiguration.openSuggesterDirectory();
+        var input = directory.openInput(LOOKUP_NAME, IOContext.READONCE)) {
+      // An empty lookup is stored as just its (zero) count, without
+      // the FST that load() expects to find after it
+      if (input.readVLong() == 0) {
+        lookup = null;
+      } else {
+        input.seek(0);
+        lookup = newLookup(directory);
+        lookup.load(input);
+      }
+    }
+  }
+
+  @Override
+  public List<String> suggest(String prefix, int maxResults) {
+    if (maxResults < 1) {
+      throw new IllegalStateException("maxResults must be >= 1");
+    }
+
+    var normalized = normalizeName(prefix);
+    if (normalized.isEmpty() || lookup == null) {
+      return List.of();
+    }
+
+    try {
+      return lookup.lookup(normalized, false, maxResults).stream()
+          .map(result -> result.key.toString())
+          .collect(Collectors.toList());
+    } catch (IOException wrapped) {
+      throw new SuggesterException(wrapped);
+    }
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return lookup == null ? 0 : lookup.ramBytesUsed();
+  }
+
+  // Matches suggestions that start with the given prefix, ignoring case
+  // and punctuation: "spinach bac" finds "spinach-bacon frittata", but
+  // "bacon" doesn't
+  private static AnalyzingSuggester newLookup(Directory directory) {
+    return new AnalyzingSuggester(directory, "suggester", new StandardAnalyzer());
+  }
+
+  static void write(IndexConfiguration indexConfiguration, Map<String, Long> weights)
+      throws IOException {
+    try (var directory = indexConfiguration.openSuggesterDirectory()) {
+      var lookup = newLookup(directory);
+      lookup.build(new WeightsIterator(weights.entrySet().iterator()));
+
+      // Replaces the current lookup in one step, so that a crash never
+      // leaves a partial one behind
+      if (Arrays.asList(directory.listAll()).contains(LOOKUP_TMP_NAME)) {
+        directory.deleteFile(LOOKUP_TMP_NAME);
+      }
+      try (var output = directory.createOutput(LOOKUP_TMP_NAME, IOContext.DEFAULT)) {
+        lookup.store(output);
+      }
+      directory.sync(List.of(LOOKUP_TMP_NAME));
+      directory.rename(LOOKUP_TMP_NAME, LOOKUP_NAME);
+      directory.syncMetaData();
+    }
+  }
+
+  static String normalizeName(String name) {
+    var normalized = WHITESPACE.matcher(name.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    return normalized.length() > MAX_SUGGESTION_LENGTH ? "" : normalized;
+  }
+
+  // Roughly what's left of an ingredient line without the quantity
+  // and the preparation notes: "2 cups frozen spinach (from two
+  // 10-ounce packages), thawed" becomes "frozen spinach"
+  static String normalizeIngredient(String ingredient) {
+    var text = PARENTHESES.matcher(ingredient.toLowerCase(Locale.ROOT)).replaceAll(" ");
+
+    int comma = text.indexOf(',');
+    if (comma != -1) {
+      text = text.substring(0, comma);
+    }
+
+    var words = new ArrayDeque<>(Arrays.asList(WHITESPACE.split(text.trim())));
+    while (!words.isEmpty()
+        && (MEASURES.contains(words.peekFirst())
+            || QUANTITY.matcher(words.peekFirst()).matches())) {
+      words.removeFirst();
+    }
+
+    return normalizeName(String.join(" ", words));
+  }
+
+  private static class WeightsIterator implements InputIterator {
+    private final Iterator<Entry<String, Long>> entries;
+    private long weight;
+
+    WeightsIterator(Iterator<Entry<String, Long>> entries) {
+      this.entries = entries;
+    }
+
+    @Override
+    public BytesRef next() {
+      if (!entries.hasNext()) {
+        return null;
+      }
+
+      var entry = entries.next();
+      // The lookup only takes int weights
+      weight = Math.min(entry.getValue(), Integer.MAX_VALUE);
+      return new BytesRef(entry.getKey());
+    }
+
+    @Override
+    public long weight() {
+      return weight;
+    }
+
+    @Override
+    public BytesRef payload() {
+      return null;
+    }
+
+    @Override
+    public boolean hasPayloads() {
+      return false;
+    }
+
+    @Override
+    public Set<BytesRef> contexts() {
+      return null;
+    }
+
+    @Override
+    public boolean hasContexts() {
+      return false;
+    }
+  }
+}
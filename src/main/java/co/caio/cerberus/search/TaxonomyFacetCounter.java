@@ -0,0 +1,44 @@
+package co.caio.cerberus.search;
+
+import static co.caio.cerberus.search.IndexField.DIETS_DIMENSION;
+import static co.caio.cerberus.search.IndexField.DIETS_FACET_FIELD;
+
+import co.caio.cerberus.lucene.FloatAssociationsThresholdCount;
+import co.caio.cerberus.lucene.FloatAssociationsThresholdHistogram;
+import java.io.IOException;
+import java.util.Map;
+import org.apache.lucene.facet.Facets;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.FastTaxonomyFacetCounts;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager.SearcherAndTaxonomy;
+
+class TaxonomyFacetCounter implements FacetCounter {
+
+  private final FacetsConfig facetsConfig;
+
+  TaxonomyFacetCounter(FacetsConfig facetsConfig) {
+    this.facetsConfig = facetsConfig;
+  }
+
+  @Override
+  public Facets countCategories(SearcherAndTaxonomy view, FacetsCollector fc) throws IOException {
+    return new FastTaxonomyFacetCounts(view.taxonomyReader, facetsConfig, fc);
+  }
+
+  @Override
+  public Facets countDiets(
+      SearcherAndTaxonomy view, Map<String, Float> thresholds, FacetsCollector fc)
+      throws IOException {
+    return new FloatAssociationsThresholdCount(
+        DIETS_FACET_FIELD, thresholds, view.taxonomyReader, facetsConfig, fc);
+  }
+
+  @Override
+  public Map<String, int[]> dietHistograms(
+      SearcherAndTaxonomy view, float[] thresholds, FacetsCollector fc) throws IOException {
+    return new FloatAssociationsThresholdHistogram(
+            DIETS_FACET_FIELD, thresholds, view.taxonomyReader, facetsConfig, fc)
+        .getHistograms(DIETS_DIMENSION);
+  }
+}
@@ -0,0 +1,67 @@
+package co.caio.cerberus.search;
+
+import java.util.Collection;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopDocsCollector;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+
+class TopDocsCollectorManager
+    implements CollectorManager<TopDocsCollector<? extends ScoreDoc>, TopDocs> {
+
+  private final Sort sort;
+  private final ScoreDoc after;
+  private final int numHits;
+  private final int totalHitsThreshold;
+
+  TopDocsCollectorManager(
+      IndexReader reader, Sort sort, ScoreDoc after, int numHits, int totalHitsThreshold) {
+    this.sort = sort;
+    this.after = after;
+    // Same capping as IndexSearcher: no point in allocating a queue
+    // bigger than the number of documents in the index
+    this.numHits = Math.min(numHits, Math.max(1, reader.maxDoc()));
+    this.totalHitsThreshold = totalHitsThreshold;
+  }
+
+  @Override
+  public TopDocsCollector<? extends ScoreDoc> newCollector() {
+    // Once totalHitsThreshold hits are counted the collectors may skip
+    // non-competitive documents (or whole segments, when the sort is a
+    // prefix of the index sort). Integer.MAX_VALUE keeps counts exact
+    // With `after` set, only hits that sort after it are collected, so
+    // deep pages cost the same as the first one
+    if (sort == Sort.RELEVANCE) {
+      return TopScoreDocCollector.create(numHits, after, totalHitsThreshold);
+    } else {
+      return TopFieldCollector.create(sort, numHits, (FieldDoc) after, totalHitsThreshold);
+    }
+  }
+
+  @Override
+  public TopDocs reduce(Collection<TopDocsCollector<? extends ScoreDoc>> collectors) {
+    // Slices are contiguous runs of segments, so ties broken by shard
+    // index come out in doc id order, just like a sequential search
+    int shard = 0;
+
+    if (sort == Sort.RELEVANCE) {
+      var shards = new TopDocs[collectors.size()];
+      for (var collector : collectors) {
+        shards[shard++] = collector.topDocs();
+      }
+      return TopDocs.merge(numHits, shards);
+    } else {
+      var shards = new TopFieldDocs[collectors.size()];
+      for (var collector : collectors) {
+        shards[shard++] = (TopFieldDocs) collector.topDocs();
+      }
+      return TopDocs.merge(sort, numHits, shards);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package co.caio.cerberus.batch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import co.caio.cerberus.Util;
+import co.caio.cerberus.db.SimpleRecipeMetadataDatabase;
+import co.caio.cerberus.search.CategoryExtractor;
+import co.caio.cerberus.search.Indexer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RecipeIngestionTest {
+
+  @Test
+  void feedsIndexAndDatabaseInOnePass(@TempDir Path tmpDir) throws IOException {
+    var indexer = Indexer.Factory.open(tmpDir.resolve("index"), CategoryExtractor.NOOP);
+    var writer = new SimpleRecipeMetadataDatabase.Writer(tmpDir.resolve("db"));
+
+    var errorLines = new ArrayList<Long>();
+    var reports = new ArrayList<IngestionStats>();
+    var ingestion =
+        new RecipeIngestion.Builder()
+            .indexer(indexer)
+            .database(writer)
+            .parallelism(2)
+            .listener(
+                100,
+                new RecipeIngestion.Listener() {
+                  @Override
+                  public void onProgress(IngestionStats stats) {
+                    reports.add(stats);
+                  }
+
+                  @Override
+                  public void onError(long lineNumber, Exception error) {
+                    errorLines.add(lineNumber);
+                  }
+                })
+            .build();
+
+    var input =
+        String.join(
+            "\n",
+            List.of(
+                sampleJsonLines(),
+                "",
+                "{ not json",
+                // Valid JSON, but not a valid recipe
+                "{\"recipeId\": 1, \"name\": \"\"}"));
+    var numLines = Util.expectedIndexSize() + 3;
+
+    var stats = ingestion.run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+    writer.close();
+    indexer.commit();
+
+    assertEquals(numLines, stats.lines());
+    assertEquals(Util.expectedIndexSize(), stats.recipes());
+    assertEquals(2, stats.errors());
+    assertEquals(List.of(numLines - 1L, (long) numLines), errorLines);
+
+    assertEquals(numLines / 100 + 1, reports.size());
+    assertEquals(stats.recipes(), reports.get(reports.size() - 1).recipes());
+    assertTrue(stats.recipesPerSecond() > 0);
+
+    assertEquals(Util.expectedIndexSize(), indexer.numDocs());
+    indexer.close();
+
+    var db = new SimpleRecipeMetadataDatabase(tmpDir.resolve("db"));
+    assertEquals(Util.expectedIndexSize(), db.size());
+    Util.getSampleRecipes()
+        .forEach(r -> assertEquals(r.name(), db.findById(r.recipeId()).orElseThrow().getName()));
+  }
+
+  @Test
+  void builderValidation() {
+    assertThrows(IllegalStateException.class, () -> new RecipeIngestion.Builder().build());
+    assertThrows(IllegalStateException.class, () -> new RecipeIngestion.Builder().parallelism(0));
+    assertThrows(
+        IllegalStateException.class,
+        () -> new RecipeIngestion.Builder().listener(0, new RecipeIngestion.Listener() {}));
+  }
+
+  private static String sampleJsonLines() throws IOException {
+    try (var samples = Util.class.getResourceAsStream("/sample_recipes.jsonlines")) {
+      return new String(samples.readAllBytes(), StandardCharsets.UTF_8).strip();
+    }
+  }
+}
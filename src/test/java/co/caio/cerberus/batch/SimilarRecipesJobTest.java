@@ -0,0 +1,113 @@
+package co.caio.cerberus.batch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import co.caio.cerberus.Util;
+import co.caio.cerberus.db.SimpleRecipeMetadataDatabase;
+import co.caio.cerberus.search.Searcher;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SimilarRecipesJobTest {
+
+  private static Searcher searcher;
+
+  @BeforeAll
+  static void prepare() {
+    searcher = Searcher.Factory.open(Util.getTestDataDir());
+  }
+
+  @Test
+  void writesSimilarRecipesForEveryRecipe(@TempDir Path tmpDir) {
+    var lastProcessed = new AtomicInteger();
+    var job =
+        new SimilarRecipesJob.Builder()
+            .searcher(searcher)
+            .checkpoint(tmpDir.resolve("checkpoint"))
+            .maxSimilar(5)
+            .parallelism(4)
+            .progressListener(
+                100,
+                (processed, total) -> {
+                  assertEquals(Util.expectedIndexSize(), total);
+                  lastProcessed.set(processed);
+                })
+            .build();
+
+    var dbPath = tmpDir.resolve("db");
+    job.run(Util::getSampleRecipes, dbPath);
+    assertEquals(Util.expectedIndexSize(), lastProcessed.get());
+
+    var db = new SimpleRecipeMetadataDatabase(dbPath);
+    assertEquals(Util.expectedIndexSize(), db.size());
+
+    Util.getSampleRecipes()
+        .forEach(
+            recipe -> {
+              var similar = db.findById(recipe.recipeId()).orElseThrow().getSimilarRecipeIds();
+
+              var expected =
+                  searcher.findSimilar(SimilarRecipesJob.recipeText(recipe), 6).recipeIds().stream()
+                      .filter(id -> id != recipe.recipeId())
+                      .limit(5)
+                      .collect(Collectors.toList());
+
+              assertEquals(expected, similar);
+              assertFalse(similar.contains(recipe.recipeId()));
+            });
+
+    // The database is never overwritten
+    assertThrows(
+        SimilarRecipesJob.SimilarRecipesJobException.class,
+        () -> job.run(Util::getSampleRecipes, dbPath));
+  }
+
+  @Test
+  void resumesFromCheckpoint(@TempDir Path tmpDir) throws Exception {
+    var checkpoint = tmpDir.resolve("checkpoint");
+    var builder = new SimilarRecipesJob.Builder().searcher(searcher).checkpoint(checkpoint);
+
+    // Only half of the corpus gets done, and the last line is cut short
+    var half = Util.expectedIndexSize() / 2;
+    builder.build().run(() -> Util.getSampleRecipes().limit(half), tmpDir.resolve("partial"));
+    var firstRecipe = Util.getSampleRecipes().findFirst().orElseThrow().recipeId();
+    Files.writeString(checkpoint, firstRecipe + "\t1,2", StandardOpenOption.APPEND);
+
+    var computed = new AtomicInteger();
+    var processed = new AtomicInteger();
+    builder
+        .progressListener(
+            1,
+            (done, total) -> {
+              computed.incrementAndGet();
+              processed.set(done);
+            })
+        .build()
+        .run(Util::getSampleRecipes, tmpDir.resolve("db"));
+
+    // One call per recipe computed now, plus the final one
+    assertEquals(Util.expectedIndexSize() - half + 1, computed.get());
+    assertEquals(Util.expectedIndexSize(), processed.get());
+
+    var db = new SimpleRecipeMetadataDatabase(tmpDir.resolve("db"));
+    assertEquals(Util.expectedIndexSize(), db.size());
+    Util.getSampleRecipes()
+        .forEach(
+            recipe ->
+                assertFalse(
+                    db.findById(recipe.recipeId()).orElseThrow().getSimilarRecipeIds().isEmpty()));
+  }
+
+  @Test
+  void builderValidation() {
+    assertThrows(IllegalStateException.class, () -> new SimilarRecipesJob.Builder().build());
+    assertThrows(IllegalStateException.class, () -> new SimilarRecipesJob.Builder().maxSimilar(0));
+    assertThrows(IllegalStateException.class, () -> new SimilarRecipesJob.Builder().parallelism(0));
+  }
+}
@@ -0,0 +1,121 @@
+package co.caio.cerberus.lucene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FloatAssociationsThresholdHistogramTest {
+
+  private static IndexSearcher indexSearcher;
+  private static TaxonomyReader taxonomyReader;
+  private static FacetsConfig config;
+
+  @Test
+  void thresholdsMustBeAscending() {
+    var collector = new FacetsCollector();
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new FloatAssociationsThresholdHistogram(
+                "score", new float[0], taxonomyReader, config, collector));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new FloatAssociationsThresholdHistogram(
+                "score", new float[] {0.5f, 0.5f}, taxonomyReader, config, collector));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new FloatAssociationsThresholdHistogram(
+                "score", new float[] {0.8f, 0.5f}, taxonomyReader, config, collector));
+  }
+
+  @Test
+  void matchesOneCountPerThreshold() throws Exception {
+    var collector = new FacetsCollector();
+    FacetsCollector.search(indexSearcher, new MatchAllDocsQuery(), 10, collector);
+
+    var thresholds = new float[] {0f, 0.5f, 0.8f, 1f};
+    var histograms =
+        new FloatAssociationsThresholdHistogram(
+                "score", thresholds, taxonomyReader, config, collector)
+            .getHistograms("score");
+
+    // Every document has a, b and c valued from 0.1 to 1.0
+    assertEquals(3, histograms.size());
+    for (var counts : histograms.values()) {
+      assertArrayEquals(new int[] {10, 6, 3, 1}, counts);
+    }
+
+    for (int i = 0; i < thresholds.length; i++) {
+      var threshold = thresholds[i];
+      var facets =
+          new FloatAssociationsThresholdCount(
+              "score",
+              Map.of("a", threshold, "b", threshold, "c", threshold),
+              taxonomyReader,
+              config,
+              collector);
+      for (var labelValue : facets.getTopChildren(3, "score").labelValues) {
+        assertEquals(labelValue.value.intValue(), histograms.get(labelValue.label)[i]);
+      }
+    }
+  }
+
+  @Test
+  void emptyWithoutHits() throws Exception {
+    var histograms =
+        new FloatAssociationsThresholdHistogram(
+                "score", new float[] {0.5f}, taxonomyReader, config, new FacetsCollector())
+            .getHistograms("score");
+    assertTrue(histograms.isEmpty());
+  }
+
+  @BeforeAll
+  static void setUp(@TempDir Path tmpDir) throws IOException {
+    final var indexDir = FSDirectory.open(tmpDir.resolve("index"));
+    final var taxoDir = FSDirectory.open(tmpDir.resolve("taxo"));
+
+    config = new FacetsConfig();
+    config.setMultiValued("score", true);
+    config.setIndexFieldName("score", "score");
+
+    var iwc = new IndexWriterConfig();
+    iwc.setOpenMode(OpenMode.CREATE);
+    var iw = new IndexWriter(indexDir, iwc);
+    var tw = new DirectoryTaxonomyWriter(taxoDir);
+
+    for (float i = 1; i <= 10; i++) {
+      var doc = new Document();
+      doc.add(new FloatThresholdField(i / 10, "score", "a"));
+      doc.add(new FloatThresholdField(i / 10, "score", "b"));
+      doc.add(new FloatThresholdField(i / 10, "score", "c"));
+      iw.addDocument(config.build(tw, doc));
+    }
+
+    iw.close();
+    tw.close();
+
+    var indexReader = DirectoryReader.open(indexDir);
+    indexSearcher = new IndexSearcher(indexReader);
+    taxonomyReader = new DirectoryTaxonomyReader(taxoDir);
+  }
+}
@@ -0,0 +1,115 @@
+package co.caio.cerberus.lucene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FloatDocValuesField;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FloatDocValuesThresholdCountTest {
+
+  private static final Map<String, String> labelToField =
+      Map.of("a", "score_a", "b", "score_b", "c", "score_c");
+
+  private static IndexSearcher indexSearcher;
+
+  @Test
+  void checkCounts() throws Exception {
+    var collector = new FacetsCollector();
+    FacetsCollector.search(indexSearcher, new MatchAllDocsQuery(), 10, collector);
+
+    // "c" is only set on half of the documents and "a" defaults to 1.0
+    var facets =
+        new FloatDocValuesThresholdCount(
+            "score", labelToField, Map.of("b", 0.5f, "c", 0f), collector);
+    var result = facets.getTopChildren(3, "score");
+
+    assertArrayEquals(
+        new LabelAndValue[] {
+          new LabelAndValue("b", 6), new LabelAndValue("c", 5), new LabelAndValue("a", 1)
+        },
+        result.labelValues);
+    assertEquals(3, result.childCount);
+
+    assertEquals(2, facets.getTopChildren(2, "score").labelValues.length);
+    assertEquals(6, facets.getSpecificValue("score", "b"));
+    assertEquals(-1, facets.getSpecificValue("score", "d"));
+    assertThrows(IllegalArgumentException.class, () -> facets.getTopChildren(3, "other"));
+  }
+
+  @Test
+  void histogramsMatchCounts() throws Exception {
+    var collector = new FacetsCollector();
+    FacetsCollector.search(indexSearcher, new MatchAllDocsQuery(), 10, collector);
+
+    var thresholds = new float[] {0f, 0.5f, 0.8f, 1f};
+    var histograms =
+        new FloatDocValuesThresholdHistogram(labelToField, thresholds, collector).getHistograms();
+
+    assertArrayEquals(new int[] {10, 6, 3, 1}, histograms.get("a"));
+    assertArrayEquals(new int[] {5, 3, 2, 1}, histograms.get("c"));
+
+    for (int i = 0; i < thresholds.length; i++) {
+      var facets =
+          new FloatDocValuesThresholdCount(
+              "score",
+              labelToField,
+              Map.of("a", thresholds[i], "b", thresholds[i], "c", thresholds[i]),
+              collector);
+      for (var label : labelToField.keySet()) {
+        assertEquals(histograms.get(label)[i], facets.getSpecificValue("score", label));
+      }
+    }
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new FloatDocValuesThresholdHistogram(labelToField, new float[0], collector));
+  }
+
+  @Test
+  void emptyWithoutHits() throws Exception {
+    var facets =
+        new FloatDocValuesThresholdCount("score", labelToField, Map.of(), new FacetsCollector());
+    assertNull(facets.getTopChildren(3, "score"));
+    assertTrue(facets.getAllDims(3).isEmpty());
+  }
+
+  @BeforeAll
+  static void setUp(@TempDir Path tmpDir) throws IOException {
+    final var indexDir = FSDirectory.open(tmpDir);
+
+    var iwc = new IndexWriterConfig();
+    iwc.setOpenMode(OpenMode.CREATE);
+    var iw = new IndexWriter(indexDir, iwc);
+
+    // Same scores as FloatAssociationsThresholdCountTest: 0.1, 0.2, ..., 1.0
+    // but "c" is only present on every other document
+    for (int i = 1; i <= 10; i++) {
+      var doc = new Document();
+      doc.add(new FloatDocValuesField("score_a", i / 10f));
+      doc.add(new FloatDocValuesField("score_b", i / 10f));
+      if (i % 2 == 0) {
+        doc.add(new FloatDocValuesField("score_c", i / 10f));
+      }
+      iw.addDocument(doc);
+    }
+
+    iw.close();
+
+    indexSearcher = new IndexSearcher(DirectoryReader.open(indexDir));
+  }
+}
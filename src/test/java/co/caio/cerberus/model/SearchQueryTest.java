@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import co.caio.cerberus.model.SearchQuery.Builder;
 import co.caio.cerberus.model.SearchQuery.RangedSpec;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 
 class SearchQueryTest {
@@ -35,6 +36,46 @@ class SearchQueryTest {
     assertThrows(IllegalStateException.class, () -> builder.maxFacets(-1).build());
     assertThrows(IllegalStateException.class, () -> builder.offset(-1).build());
     assertDoesNotThrow(() -> builder.offset(0).maxResults(5).maxFacets(0).build());
+    assertThrows(IllegalStateException.class, () -> builder.offset(1).cursor("c").build());
+  }
+
+  @Test
+  void totalHitsThresholdRequiresInexactCounts() {
+    var builder = new SearchQuery.Builder().fulltext("oil").totalHitsThreshold(100);
+    assertThrows(IllegalStateException.class, builder::build);
+    assertDoesNotThrow(() -> builder.exactTotalHits(false).build());
+    assertThrows(IllegalStateException.class, () -> builder.totalHitsThreshold(-1).build());
+  }
+
+  @Test
+  void dietFacetThresholds() {
+    var builder = new Builder().fulltext("oil");
+    assertThrows(
+        IllegalStateException.class, () -> builder.putDietThresholds("keto", 1.1F).build());
+    assertThrows(
+        IllegalStateException.class, () -> builder.putDietThresholds("keto", -0.1F).build());
+    assertDoesNotThrow(() -> new Builder().putDietThresholds("keto", 0.5F).build());
+  }
+
+  @Test
+  void dietHistogramThresholds() {
+    assertThrows(
+        IllegalStateException.class,
+        () -> new Builder().addDietHistogramThresholds(0.5F, 0.5F).build());
+    assertThrows(
+        IllegalStateException.class,
+        () -> new Builder().addDietHistogramThresholds(0.8F, 0.5F).build());
+    assertThrows(
+        IllegalStateException.class, () -> new Builder().addDietHistogramThresholds(1.1F).build());
+    assertDoesNotThrow(() -> new Builder().addDietHistogramThresholds(0F, 0.5F, 1F).build());
+  }
+
+  @Test
+  void facetFilters() {
+    assertThrows(IllegalStateException.class, () -> new Builder().facetFilter("site").build());
+    assertEquals(
+        new Builder().putFacetFilters("site", Set.of("a", "b")).build(),
+        new Builder().facetFilter("site", "b", "a", "b").build());
   }
 
   @Test
@@ -57,5 +98,6 @@ class SearchQueryTest {
     assertEquals(1, builder.numIngredients(RangedSpec.of(1, 10)).build().numSelectedFilters());
     assertEquals(2, builder.carbohydrateContent(RangedSpec.of(0, 30)).build().numSelectedFilters());
     assertEquals(3, builder.diet("keto").build().numSelectedFilters());
+    assertEquals(4, builder.facetFilter("site", "a", "b").build().numSelectedFilters());
   }
 }
@@ -91,6 +91,20 @@ class CategoryExtractorTest {
             });
   }
 
+  @Test
+  void dietsCategoryIsReserved() {
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            new CategoryExtractor.Builder()
+                .addCategory(IndexField.DIETS_DIMENSION, true, r -> r.diets().keySet()));
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            new CategoryExtractor.Builder()
+                .addCategory(IndexField.CALORIES_DIMENSION, false, r -> Set.of()));
+  }
+
   private Recipe fakeRecipe(long recipeId, int numIngredients, int calories) {
     return new Recipe.Builder()
         .recipeId(recipeId)
@@ -0,0 +1,39 @@
+package co.caio.cerberus.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import co.caio.cerberus.Util;
+import co.caio.cerberus.model.Recipe;
+import java.util.List;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexableField;
+import org.junit.jupiter.api.Test;
+
+class DocumentTemplateTest {
+
+  @Test
+  void fieldsAreReusedWithNewValues() {
+    var template = new DocumentTemplate(TextField.TYPE_NOT_STORED);
+
+    var first =
+        new Recipe.Builder()
+            .from(Util.getBasicRecipe())
+            .addIngredients("item c")
+            .putDiets("keto", 0.8F)
+            .calories(300)
+            .build();
+    List<IndexableField> firstFields = List.copyOf(template.fill(first).getFields());
+
+    var doc = template.fill(Util.getBasicRecipe());
+    assertEquals(1L, doc.getField(IndexField.RECIPE_ID).numericValue().longValue());
+    assertEquals(2, doc.getField(IndexField.NUM_INGREDIENTS).numericValue().intValue());
+    assertNull(doc.getField(IndexField.CALORIES));
+    assertNull(doc.getField(IndexField.getFieldNameForDiet("keto")));
+    // name, one instruction and two ingredients
+    assertEquals(4, doc.getFields(IndexField.FULL_RECIPE).length);
+    assertEquals("valid recipe 1", doc.getFields(IndexField.FULL_RECIPE)[0].stringValue());
+
+    // Nothing got allocated for the second recipe
+    doc.getFields().forEach(field -> assertTrue(firstFields.stream().anyMatch(f -> f == field)));
+  }
+}
@@ -2,6 +2,7 @@ package co.caio.cerberus.search;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import co.caio.cerberus.model.SearchQuery.SortOrder;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Map.Entry;
@@ -45,6 +46,33 @@ class IndexConfigurationTest {
     assertEquals(multiValued, extractMultiValued(loaded.getFacetsConfig()));
   }
 
+  @Test
+  void indexSortIsPersisted(@TempDir Path base) throws IOException {
+    var config = new IndexConfiguration(base, Set.of(), SortOrder.TOTAL_TIME);
+    config.save();
+
+    var loaded = IndexConfiguration.fromBaseDirectory(base);
+    assertEquals(SortOrder.TOTAL_TIME, loaded.getIndexSortOrder());
+    assertEquals(config.getIndexSort(), loaded.getIndexSort());
+
+    new IndexConfiguration(base, Set.of()).save();
+    assertNull(IndexConfiguration.fromBaseDirectory(base).getIndexSort());
+  }
+
+  @Test
+  void facetsModeIsPersisted(@TempDir Path base) throws IOException {
+    new IndexConfiguration(
+            base, Set.of(), SortOrder.RELEVANCE, Indexer.FacetsMode.SORTED_SET_DOC_VALUES)
+        .save();
+    assertEquals(
+        Indexer.FacetsMode.SORTED_SET_DOC_VALUES,
+        IndexConfiguration.fromBaseDirectory(base).getFacetsMode());
+
+    new IndexConfiguration(base, Set.of()).save();
+    assertEquals(
+        Indexer.FacetsMode.TAXONOMY, IndexConfiguration.fromBaseDirectory(base).getFacetsMode());
+  }
+
   private Set<String> extractMultiValued(FacetsConfig fc) {
     return fc.getDimConfigs()
         .entrySet()
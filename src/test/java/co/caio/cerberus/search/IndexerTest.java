@@ -3,8 +3,14 @@ package co.caio.cerberus.search;
 import static org.junit.jupiter.api.Assertions.*;
 
 import co.caio.cerberus.Util;
+import co.caio.cerberus.model.SearchQuery;
+import co.caio.cerberus.search.Indexer.WriterProfile;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Set;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -23,4 +29,104 @@ class IndexerTest {
     assertEquals(1, newIndexSameDir.numDocs());
     newIndexSameDir.close();
   }
+
+  @Test
+  void addRecipesInParallel(@TempDir Path tempDir) throws IOException {
+    var extractor =
+        new CategoryExtractor.Builder()
+            .addCategory("site", false, recipe -> Set.of(recipe.siteName()))
+            .build();
+
+    var parallel = Indexer.Factory.open(tempDir.resolve("parallel"), extractor);
+    parallel.addRecipes(Util.getSampleRecipes(), 4);
+    assertEquals(Util.expectedIndexSize(), parallel.numDocs());
+    parallel.close();
+
+    var sequential = Indexer.Factory.open(tempDir.resolve("sequential"), extractor);
+    sequential.addRecipes(Util.getSampleRecipes(), 1);
+    sequential.close();
+
+    var query = new SearchQuery.Builder().fulltext("egg").maxFacets(10).build();
+    var sequentialSearcher = Searcher.Factory.open(tempDir.resolve("sequential"));
+    var parallelSearcher = Searcher.Factory.open(tempDir.resolve("parallel"));
+    var expected = sequentialSearcher.search(query);
+    var result = parallelSearcher.search(query);
+
+    assertEquals(expected.totalHits(), result.totalHits());
+    assertEquals(expected.facets(), result.facets());
+
+    sequentialSearcher.close();
+    parallelSearcher.close();
+  }
+
+  @Test
+  void writerProfiles(@TempDir Path tempDir) throws IOException {
+    var config = new IndexWriterConfig();
+    IndexerImpl.applyProfile(config, WriterProfile.DEFAULT);
+    assertEquals(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB, config.getRAMBufferSizeMB());
+
+    config = new IndexWriterConfig();
+    IndexerImpl.applyProfile(config, WriterProfile.BULK);
+    assertTrue(config.getRAMBufferSizeMB() > IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+    assertFalse(config.getUseCompoundFile());
+    assertEquals(0, config.getMergePolicy().getNoCFSRatio());
+
+    config = new IndexWriterConfig();
+    IndexerImpl.applyProfile(config, WriterProfile.LOW_LATENCY_SEARCH);
+    assertTrue(config.getUseCompoundFile());
+    assertEquals(4, ((TieredMergePolicy) config.getMergePolicy()).getSegmentsPerTier());
+    assertTrue(((ConcurrentMergeScheduler) config.getMergeScheduler()).getAutoIOThrottle());
+
+    for (var profile : WriterProfile.values()) {
+      var dir = tempDir.resolve(profile.name());
+      var indexer = Indexer.Factory.open(dir, CategoryExtractor.NOOP, profile);
+      indexer.addRecipes(Util.getSampleRecipes(), 2);
+      indexer.commit();
+      assertEquals(Util.expectedIndexSize(), indexer.numDocs());
+      indexer.close();
+
+      // The profile isn't part of the index configuration
+      Indexer.Factory.open(dir, CategoryExtractor.NOOP).close();
+    }
+  }
+
+  @Test
+  void writerProfilesKeepTheIndexSettings(@TempDir Path tempDir) throws IOException {
+    Indexer.Factory.open(
+            tempDir,
+            CategoryExtractor.NOOP,
+            SearchQuery.SortOrder.TOTAL_TIME,
+            Indexer.FacetsMode.SORTED_SET_DOC_VALUES,
+            true,
+            WriterProfile.BULK)
+        .close();
+
+    var indexer = Indexer.Factory.open(tempDir, CategoryExtractor.NOOP, WriterProfile.INCREMENTAL);
+    indexer.addRecipes(Util.getSampleRecipes(), 2);
+    indexer.close();
+
+    var config = IndexConfiguration.fromBaseDirectory(tempDir);
+    assertEquals(SearchQuery.SortOrder.TOTAL_TIME, config.getIndexSortOrder());
+    assertEquals(Indexer.FacetsMode.SORTED_SET_DOC_VALUES, config.getFacetsMode());
+    assertTrue(config.hasTermVectors());
+  }
+
+  @Test
+  void addRecipesStopsAtFirstFailure(@TempDir Path tempDir) throws IOException {
+    var failing =
+        new CategoryExtractor.Builder()
+            .addCategory(
+                "broken",
+                false,
+                recipe -> {
+                  throw new IllegalArgumentException("nope");
+                })
+            .build();
+
+    var index = Indexer.Factory.open(tempDir, failing);
+    assertThrows(
+        IllegalArgumentException.class, () -> index.addRecipes(Util.getSampleRecipes(), 4));
+    assertThrows(IllegalStateException.class, () -> index.addRecipes(Util.getSampleRecipes(), 0));
+    index.close();
+  }
 }
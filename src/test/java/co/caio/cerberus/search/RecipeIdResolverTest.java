@@ -0,0 +1,59 @@
+package co.caio.cerberus.search;
+
+import static co.caio.cerberus.search.IndexField.RECIPE_ID;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RecipeIdResolverTest {
+
+  @Test
+  void resolvesInHitOrderAcrossSegments(@TempDir Path tmpDir) throws IOException {
+    var directory = FSDirectory.open(tmpDir);
+    var writer = new IndexWriter(directory, new IndexWriterConfig());
+
+    // First segment: old style documents, stored field only
+    for (long id = 0; id < 5; id++) {
+      var doc = new Document();
+      doc.add(new StoredField(RECIPE_ID, id));
+      writer.addDocument(doc);
+    }
+    writer.commit();
+
+    // Second segment: ids as doc values
+    for (long id = 5; id < 10; id++) {
+      var doc = new Document();
+      doc.add(new StoredField(RECIPE_ID, id));
+      doc.add(new NumericDocValuesField(RECIPE_ID, id));
+      writer.addDocument(doc);
+    }
+    writer.close();
+
+    var reader = DirectoryReader.open(directory);
+    assertEquals(2, reader.leaves().size());
+
+    // Doc ids and recipe ids are the same, so any order works
+    var hits = new ScoreDoc[] {hit(7), hit(2), hit(9), hit(0), hit(5), hit(3)};
+
+    assertArrayEquals(new long[] {7, 2, 9, 0, 5, 3}, RecipeIdResolver.resolve(reader, hits, 0));
+    assertArrayEquals(new long[] {0, 5, 3}, RecipeIdResolver.resolve(reader, hits, 3));
+    assertEquals(0, RecipeIdResolver.resolve(reader, hits, hits.length).length);
+
+    reader.close();
+  }
+
+  private ScoreDoc hit(int doc) {
+    return new ScoreDoc(doc, 1F);
+  }
+}
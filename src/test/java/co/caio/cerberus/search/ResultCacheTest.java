@@ -0,0 +1,135 @@
+package co.caio.cerberus.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import co.caio.cerberus.model.SearchQuery;
+import co.caio.cerberus.model.SearchResult;
+import org.junit.jupiter.api.Test;
+
+class ResultCacheTest {
+
+  private static final Object READER = new Object();
+
+  @Test
+  void canonicalizeIgnoresCaseAndWhitespace() {
+    var expected = new SearchQuery.Builder().fulltext("sweet potato").maxFacets(3).build();
+
+    assertSame(expected, ResultCache.canonicalize(expected));
+    assertEquals(
+        expected,
+        ResultCache.canonicalize(
+            new SearchQuery.Builder().fulltext("  Sweet \t POTATO ").maxFacets(3).build()));
+
+    var noFulltext = new SearchQuery.Builder().diet("keto").build();
+    assertSame(noFulltext, ResultCache.canonicalize(noFulltext));
+  }
+
+  @Test
+  void hitsOnlyForTheSameReader() {
+    var cache = new ResultCache(1 << 20);
+    var query = query("oil");
+    var result = result(3);
+
+    assertNull(cache.get(query, READER));
+    cache.put(query, READER, result);
+
+    assertSame(result, cache.get(query, READER));
+    assertNull(cache.get(query, new Object()));
+
+    var stats = cache.stats();
+    assertEquals(1, stats.hitCount());
+    assertEquals(2, stats.missCount());
+    assertEquals(1, stats.size());
+    assertEquals(ResultCache.weigh(query, result), stats.ramBytesUsed());
+
+    cache.invalidateAll();
+    assertNull(cache.get(query, READER));
+    assertEquals(0, cache.stats().size());
+  }
+
+  @Test
+  void frequentQueriesAreNotEvictedByRareOnes() {
+    var result = result(10);
+    var entryWeight = ResultCache.weigh(query("popular"), result);
+    var cache = new ResultCache(entryWeight * 2);
+
+    var popular = query("popular");
+    var other = query("other");
+    for (int i = 0; i < 10; i++) {
+      cache.get(popular, READER);
+      cache.get(other, READER);
+    }
+    cache.put(popular, READER, result);
+    cache.put(other, READER, result);
+
+    // Seen only once: not admitted
+    var rare = query("rare");
+    cache.get(rare, READER);
+    cache.put(rare, READER, result);
+
+    assertNull(cache.get(rare, READER));
+    assertNotNull(cache.get(popular, READER));
+    assertNotNull(cache.get(other, READER));
+    assertEquals(0, cache.stats().evictionCount());
+
+    // But once it gets popular it takes the place of the
+    // least recently used entry
+    for (int i = 0; i < 20; i++) {
+      cache.get(rare, READER);
+    }
+    cache.put(rare, READER, result);
+
+    assertNotNull(cache.get(rare, READER));
+    assertNull(cache.get(popular, READER));
+    assertEquals(1, cache.stats().evictionCount());
+    assertTrue(cache.stats().ramBytesUsed() <= entryWeight * 2);
+  }
+
+  @Test
+  void rejectedEntriesLeaveTheCacheUntouched() {
+    var cold = query("cold");
+    var popular = query("popular");
+    var small = result(10);
+    var cache = new ResultCache(ResultCache.weigh(cold, small) + ResultCache.weigh(popular, small));
+
+    cache.get(cold, READER);
+    for (int i = 0; i < 10; i++) {
+      cache.get(popular, READER);
+    }
+    cache.put(cold, READER, small);
+    cache.put(popular, READER, small);
+
+    // Needs both entries gone to fit: the cold one could go, but the
+    // popular one can't, so nothing is evicted
+    var big = query("big");
+    var bigResult = result(30);
+    for (int i = 0; i < 5; i++) {
+      cache.get(big, READER);
+    }
+    cache.put(big, READER, bigResult);
+
+    assertNull(cache.get(big, READER));
+    assertSame(small, cache.get(cold, READER));
+    assertSame(small, cache.get(popular, READER));
+    assertEquals(0, cache.stats().evictionCount());
+
+    // Same for a rejected replacement: the previous entry stays
+    cache.put(cold, READER, bigResult);
+    assertSame(small, cache.get(cold, READER));
+    assertSame(small, cache.get(popular, READER));
+    assertEquals(2, cache.stats().size());
+    assertEquals(0, cache.stats().evictionCount());
+  }
+
+  private SearchQuery query(String fulltext) {
+    return new SearchQuery.Builder().fulltext(fulltext).build();
+  }
+
+  private SearchResult result(int numRecipes) {
+    var builder = new SearchResult.Builder().totalHits(numRecipes);
+    for (int i = 0; i < numRecipes; i++) {
+      builder.addRecipe(i);
+    }
+    return builder.build();
+  }
+}
@@ -15,12 +15,32 @@ import co.caio.cerberus.model.Recipe;
 import co.caio.cerberus.model.SearchQuery;
 import co.caio.cerberus.model.SearchQuery.SortOrder;
 import co.caio.cerberus.search.Searcher.SearcherException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
 import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.apache.lucene.facet.range.LongRange;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.queries.function.FunctionScoreQuery;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DoubleValues;
+import org.apache.lucene.search.DoubleValuesSource;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.store.FSDirectory;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -58,6 +78,223 @@ class SearcherTest {
     assertTrue(searcher.search(builder.maxResults(42).build()).recipeIds().size() <= 42);
   }
 
+  @Test
+  void collectingFacetsDoesNotChangeHits() {
+    var builder =
+        new SearchQuery.Builder().fulltext("garlic").sort(SortOrder.TOTAL_TIME).maxResults(20);
+
+    var withoutFacets = searcher.search(builder.maxFacets(0).build());
+    var withFacets = searcher.search(builder.maxFacets(10).build());
+
+    assertFalse(withFacets.facets().isEmpty());
+    assertEquals(withoutFacets.totalHits(), withFacets.totalHits());
+    assertEquals(withoutFacets.recipeIds(), withFacets.recipeIds());
+  }
+
+  @Test
+  void dietFacetsRespectThresholds() {
+    var builder = new SearchQuery.Builder().fulltext("salt").maxResults(1);
+
+    var defaults = searcher.search(builder.maxFacets(10).build()).facets().get("diets");
+    assertNotNull(defaults);
+
+    var thresholds = Map.of("vegetarian", 0.5F, "keto", 0.8F);
+    var result = searcher.search(builder.dietThresholds(thresholds).build());
+    var diets = result.facets().get("diets");
+
+    for (var diet : diets.children().keySet()) {
+      var threshold = thresholds.getOrDefault(diet, 1F);
+      var expected =
+          searcher
+              .search(
+                  new SearchQuery.Builder()
+                      .fulltext("salt")
+                      .diet(diet, threshold)
+                      .maxResults(1)
+                      .build())
+              .totalHits();
+      assertEquals(expected, diets.children().get(diet));
+
+      // Lower thresholds can only count more recipes
+      assertTrue(diets.children().get(diet) >= defaults.children().getOrDefault(diet, 0L));
+    }
+
+    assertTrue(diets.children().containsKey("vegetarian"));
+  }
+
+  @Test
+  void dietHistogramsMatchDietFilters() {
+    var thresholds = List.of(0.5F, 0.8F, 1F);
+    var result =
+        searcher.search(
+            new SearchQuery.Builder()
+                .fulltext("salt")
+                .maxResults(1)
+                .maxFacets(10)
+                .dietHistogramThresholds(thresholds)
+                .build());
+
+    assertFalse(result.dietHistograms().isEmpty());
+    result
+        .dietHistograms()
+        .forEach(
+            (diet, counts) -> {
+              assertEquals(thresholds.size(), counts.size());
+              for (int i = 0; i < thresholds.size(); i++) {
+                var expected =
+                    searcher
+                        .search(
+                            new SearchQuery.Builder()
+                                .fulltext("salt")
+                                .diet(diet, thresholds.get(i))
+                                .maxResults(1)
+                                .build())
+                        .totalHits();
+                assertEquals(expected, (long) counts.get(i));
+              }
+            });
+
+    // Not computed unless facets are requested
+    assertTrue(
+        searcher
+            .search(
+                new SearchQuery.Builder()
+                    .fulltext("salt")
+                    .dietHistogramThresholds(thresholds)
+                    .build())
+            .dietHistograms()
+            .isEmpty());
+  }
+
+  @Test
+  void rangeFacetsMatchRangeFilters() {
+    var rangedSearcher =
+        new Searcher.Builder()
+            .dataDirectory(Util.getTestDataDir())
+            .totalTimeRanges(
+                new LongRange("<15", 0, true, 14, true),
+                new LongRange("15-30", 15, true, 30, true),
+                new LongRange(">30", 31, true, Integer.MAX_VALUE, true))
+            .caloriesRanges(new LongRange("<500", 0, true, 499, true))
+            .build();
+
+    var builder = new SearchQuery.Builder().fulltext("salt").maxResults(1);
+    var result = rangedSearcher.search(builder.maxFacets(10).build());
+
+    var totalTime = result.facets().get("totalTimeRanges");
+    assertNotNull(totalTime);
+    assertEquals(List.of("<15", "15-30", ">30"), List.copyOf(totalTime.children().keySet()));
+    assertEquals(
+        searcher
+            .search(
+                new SearchQuery.Builder()
+                    .fulltext("salt")
+                    .totalTime(SearchQuery.RangedSpec.of(15, 30))
+                    .build())
+            .totalHits(),
+        totalTime.children().get("15-30"));
+
+    var calories = result.facets().get("caloriesRanges");
+    assertNotNull(calories);
+    assertEquals(
+        searcher
+            .search(
+                new SearchQuery.Builder()
+                    .fulltext("salt")
+                    .calories(SearchQuery.RangedSpec.of(0, 499))
+                    .build())
+            .totalHits(),
+        calories.children().get("<500"));
+
+    assertFalse(result.facets().containsKey("numIngredientsRanges"));
+    // Not part of the default searcher
+    assertFalse(
+        searcher
+            .search(new SearchQuery.Builder().fulltext("*").maxFacets(10).build())
+            .facets()
+            .containsKey("totalTimeRanges"));
+    // Also computed for precomputed (match all) counts
+    var matchAll =
+        rangedSearcher.search(new SearchQuery.Builder().fulltext("*").maxFacets(10).build());
+    assertTrue(matchAll.facets().get("totalTimeRanges").children().get(">30") > 0);
+    var everything =
+        rangedSearcher.search(
+            new SearchQuery.Builder()
+                .fulltext("*")
+                .numIngredients(SearchQuery.RangedSpec.of(0, Integer.MAX_VALUE))
+                .maxFacets(10)
+                .build());
+    assertEquals(matchAll.totalHits(), everything.totalHits());
+    assertEquals(
+        everything.facets().get("totalTimeRanges"), matchAll.facets().get("totalTimeRanges"));
+    assertEquals(
+        everything.facets().get("caloriesRanges"), matchAll.facets().get("caloriesRanges"));
+
+    assertThrows(IllegalStateException.class, () -> new Searcher.Builder().caloriesRanges());
+    rangedSearcher.close();
+  }
+
+  @Test
+  void facetFiltersDrillDown() {
+    // The "diet" category of the test index has the diets with score 1
+    var builder = new SearchQuery.Builder().fulltext("salt").maxResults(50);
+
+    var vegetarian = searcher.search(builder.facetFilter("diet", "vegetarian").build());
+    assertTrue(vegetarian.totalHits() > 0);
+    assertEquals(
+        searcher
+            .search(new SearchQuery.Builder().fulltext("salt").diet("vegetarian").build())
+            .totalHits(),
+        vegetarian.totalHits());
+
+    var keto = searcher.search(builder.facetFilter("diet", "keto").build());
+    var either = searcher.search(builder.facetFilter("diet", "vegetarian", "keto").build());
+    assertTrue(either.totalHits() >= Math.max(vegetarian.totalHits(), keto.totalHits()));
+    assertTrue(either.totalHits() <= vegetarian.totalHits() + keto.totalHits());
+
+    // Filtering only by facets works too
+    assertEquals(
+        searcher.search(new SearchQuery.Builder().diet("vegetarian").build()).totalHits(),
+        searcher
+            .search(new SearchQuery.Builder().facetFilter("diet", "vegetarian").build())
+            .totalHits());
+
+    assertEquals(
+        0,
+        searcher
+            .search(new SearchQuery.Builder().facetFilter("nope", "vegetarian").build())
+            .totalHits());
+  }
+
+  @Test
+  void multiSelectFacetsAreCountedSideways() {
+    var unfiltered =
+        searcher.search(new SearchQuery.Builder().fulltext("salt").maxFacets(100).build());
+
+    var builder =
+        new SearchQuery.Builder()
+            .fulltext("salt")
+            .maxResults(5)
+            .maxFacets(100)
+            .facetFilter("diet", "vegetarian");
+
+    var drilledDown = searcher.search(builder.build());
+    assertEquals(
+        drilledDown.totalHits(), drilledDown.facets().get("diet").children().get("vegetarian"));
+
+    var multiSelect = searcher.search(builder.addMultiSelectDimensions("diet").build());
+    assertEquals(drilledDown.totalHits(), multiSelect.totalHits());
+    assertEquals(drilledDown.recipeIds(), multiSelect.recipeIds());
+    // Counted as if "diet" wasn't filtered, everything else isn't
+    assertEquals(unfiltered.facets().get("diet"), multiSelect.facets().get("diet"));
+    assertEquals(drilledDown.facets().get("diets"), multiSelect.facets().get("diets"));
+
+    // Not selected, nothing to count sideways
+    assertEquals(
+        searcher.search(builder.multiSelectDimensions(Set.of("nope")).build()).facets(),
+        drilledDown.facets());
+  }
+
   @Test
   void facetCountsAreDistinct() {
     // Commit 2eaef6c8da caused a bug where all counts of the diet facet
@@ -132,6 +369,389 @@ class SearcherTest {
     assertEquals(3, searcher.search(sqb.diet("keto", 0.6F).build()).totalHits());
   }
 
+  @Test
+  void maybeRefreshPicksUpNewCommits(@TempDir Path tmpDir) throws Exception {
+    var indexer = Indexer.Factory.open(tmpDir, CategoryExtractor.NOOP);
+    var recipes = Util.getSampleRecipes().limit(2).iterator();
+
+    indexer.addRecipe(recipes.next());
+    indexer.commit();
+
+    var searcher = Searcher.Factory.open(tmpDir);
+    assertEquals(1, searcher.numDocs());
+    // Nothing changed, nothing to refresh
+    assertTrue(searcher.maybeRefresh());
+    assertEquals(1, searcher.numDocs());
+
+    indexer.addRecipe(recipes.next());
+    indexer.commit();
+    indexer.close();
+
+    // New commits are only visible after a refresh
+    assertEquals(1, searcher.numDocs());
+    assertTrue(searcher.maybeRefresh());
+    assertEquals(2, searcher.numDocs());
+
+    searcher.close();
+  }
+
+  @Test
+  void resultCacheIsInvalidatedOnRefresh(@TempDir Path tmpDir) throws Exception {
+    var indexer = Indexer.Factory.open(tmpDir, CategoryExtractor.NOOP);
+    var recipes = Util.getSampleRecipes().limit(2).iterator();
+
+    indexer.addRecipe(recipes.next());
+    indexer.commit();
+
+    var searcher = new Searcher.Builder().dataDirectory(tmpDir).resultCache(1 << 20).build();
+    var query = new SearchQuery.Builder().fulltext("*").build();
+
+    assertEquals(1, searcher.search(query).totalHits());
+    // Same query modulo whitespace: served from the cache
+    assertEquals(1, searcher.search(new SearchQuery.Builder().fulltext(" * ").build()).totalHits());
+    assertEquals(1, searcher.resultCacheStats().hitCount());
+    assertEquals(1, searcher.resultCacheStats().missCount());
+
+    indexer.addRecipe(recipes.next());
+    indexer.commit();
+    indexer.close();
+
+    searcher.maybeRefresh();
+    assertEquals(0, searcher.resultCacheStats().size());
+    assertEquals(2, searcher.search(query).totalHits());
+
+    searcher.close();
+  }
+
+  @Test
+  void rangesDoNotAffectScoring() {
+    var builder = new SearchQuery.Builder().fulltext("egg").maxResults(Util.expectedIndexSize());
+    var unfiltered = searcher.search(builder.build());
+
+    // Filtering only removes hits, the relative order stays the same
+    var filtered = searcher.search(builder.totalTime(SearchQuery.RangedSpec.of(0, 60)).build());
+    assertTrue(filtered.totalHits() > 0);
+    assertTrue(filtered.totalHits() < unfiltered.totalHits());
+
+    var expected = new ArrayList<>(unfiltered.recipeIds());
+    expected.retainAll(filtered.recipeIds());
+    assertEquals(expected, filtered.recipeIds());
+  }
+
+  @Test
+  void filtersAreCached() {
+    var alwaysCache =
+        new QueryCachingPolicy() {
+          @Override
+          public void onUse(Query query) {}
+
+          @Override
+          public boolean shouldCache(Query query) {
+            return true;
+          }
+        };
+    var cachingSearcher =
+        new Searcher.Builder()
+            .dataDirectory(Util.getTestDataDir())
+            .queryCache(new LRUQueryCache(100, 1 << 20, leaf -> true))
+            .queryCachingPolicy(alwaysCache)
+            .build();
+
+    var query =
+        new SearchQuery.Builder()
+            .fulltext("egg")
+            .totalTime(SearchQuery.RangedSpec.of(0, 30))
+            .build();
+    var expected = cachingSearcher.search(query);
+    assertEquals(0, cachingSearcher.queryCacheStats().hitCount());
+
+    assertEquals(expected, cachingSearcher.search(query));
+    var stats = cachingSearcher.queryCacheStats();
+    assertTrue(stats.hitCount() > 0);
+    assertTrue(stats.size() > 0);
+    assertTrue(stats.ramBytesUsed() > 0);
+
+    cachingSearcher.close();
+  }
+
+  @Test
+  void queryCacheCanBeDisabled() {
+    var uncachedSearcher =
+        new Searcher.Builder().dataDirectory(Util.getTestDataDir()).queryCache(null).build();
+
+    var query =
+        new SearchQuery.Builder()
+            .fulltext("egg")
+            .totalTime(SearchQuery.RangedSpec.of(0, 30))
+            .build();
+    assertEquals(searcher.search(query), uncachedSearcher.search(query));
+    assertSame(CacheStats.EMPTY, uncachedSearcher.queryCacheStats());
+
+    uncachedSearcher.close();
+  }
+
+  @Test
+  void sortedSetFacetsMatchTaxonomyFacets(@TempDir Path tmpDir) throws Exception {
+    // Same categories as the test index
+    var extractor =
+        new CategoryExtractor.Builder()
+            .addCategory(
+                "diet",
+                true,
+                recipe ->
+                    recipe
+                        .diets()
+                        .entrySet()
+                        .stream()
+                        .filter(es -> es.getValue() == 1f)
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toSet()))
+            .build();
+
+    var indexer =
+        Indexer.Factory.open(
+            tmpDir, extractor, SortOrder.RELEVANCE, Indexer.FacetsMode.SORTED_SET_DOC_VALUES);
+    Util.getSampleRecipes().forEach(r -> assertDoesNotThrow(() -> indexer.addRecipe(r)));
+    indexer.commit();
+    indexer.close();
+
+    assertFalse(Files.exists(tmpDir.resolve("taxonomy")));
+    assertThrows(
+        Indexer.IndexerException.class,
+        () -> Indexer.Factory.open(tmpDir, extractor, SortOrder.RELEVANCE));
+
+    var ssdvSearcher = Searcher.Factory.open(tmpDir);
+
+    var queries =
+        List.of(
+            new SearchQuery.Builder().fulltext("*").maxFacets(100).build(),
+            new SearchQuery.Builder().fulltext("salt").maxFacets(100).build(),
+            new SearchQuery.Builder()
+                .fulltext("oil")
+                .maxFacets(100)
+                .putDietThresholds("vegetarian", 0.5F)
+                .addDietHistogramThresholds(0.2F, 0.8F)
+                .build(),
+            new SearchQuery.Builder()
+                .fulltext("salt")
+                .maxFacets(100)
+                .facetFilter("diet", "vegetarian")
+                .addMultiSelectDimensions("diet")
+                .build());
+
+    for (var query : queries) {
+      var expected = searcher.search(query);
+      var result = ssdvSearcher.search(query);
+
+      assertTrue(expected.totalHits() > 0);
+      assertEquals(expected.totalHits(), result.totalHits());
+      assertEquals(expected.recipeIds(), result.recipeIds());
+      assertEquals(expected.facets(), result.facets());
+      assertEquals(expected.dietHistograms(), result.dietHistograms());
+    }
+
+    ssdvSearcher.close();
+  }
+
+  @Test
+  void sortedIndexTerminatesEarly(@TempDir Path tmpDir) throws Exception {
+    var indexer = Indexer.Factory.open(tmpDir, CategoryExtractor.NOOP, SortOrder.TOTAL_TIME);
+    Util.getSampleRecipes().forEach(r -> assertDoesNotThrow(() -> indexer.addRecipe(r)));
+    indexer.commit();
+    indexer.close();
+
+    // Reopening with a different sort is not allowed
+    assertThrows(
+        Indexer.IndexerException.class,
+        () -> Indexer.Factory.open(tmpDir, CategoryExtractor.NOOP, SortOrder.CALORIES));
+    // Nor without one, which would add unsorted segments
+    assertThrows(
+        Indexer.IndexerException.class, () -> Indexer.Factory.open(tmpDir, CategoryExtractor.NOOP));
+    assertEquals(
+        SortOrder.TOTAL_TIME, IndexConfiguration.fromBaseDirectory(tmpDir).getIndexSortOrder());
+
+    var sortedSearcher = Searcher.Factory.open(tmpDir);
+    var builder = new SearchQuery.Builder().fulltext("salt").sort(SortOrder.TOTAL_TIME);
+
+    var exact = sortedSearcher.search(builder.build());
+    assertTrue(exact.exactTotalHits());
+    assertEquals(searcher.search(builder.build()).totalHits(), exact.totalHits());
+
+    var approximate = sortedSearcher.search(builder.exactTotalHits(false).build());
+    assertFalse(approximate.exactTotalHits());
+    assertTrue(approximate.totalHits() < exact.totalHits());
+    assertTrue(approximate.totalHits() >= approximate.recipeIds().size());
+    assertEquals(exact.recipeIds(), approximate.recipeIds());
+    assertEquals(exact.nextCursor(), approximate.nextCursor());
+
+    var lastValue = 0;
+    for (long r : sortedSearcher.search(builder.maxResults(50).build()).recipeIds()) {
+      var value = Util.getRecipe(r).totalTime().orElse(Integer.MAX_VALUE);
+      assertTrue(lastValue <= value);
+      lastValue = value;
+    }
+
+    // Facets need every hit, so counts stay exact
+    var withFacets = sortedSearcher.search(builder.maxFacets(1).build());
+    assertTrue(withFacets.exactTotalHits());
+    assertEquals(exact.totalHits(), withFacets.totalHits());
+
+    sortedSearcher.close();
+  }
+
+  @Test
+  void totalHitsThresholdKeepsTopHits() {
+    var builder = new SearchQuery.Builder().fulltext("salt").maxResults(5);
+    var exact = searcher.search(builder.build());
+
+    for (int threshold : new int[] {0, 10, 100}) {
+      var result =
+          searcher.search(builder.exactTotalHits(false).totalHitsThreshold(threshold).build());
+
+      assertEquals(exact.recipeIds(), result.recipeIds());
+      assertTrue(result.totalHits() <= exact.totalHits());
+      if (result.exactTotalHits()) {
+        assertEquals(exact.totalHits(), result.totalHits());
+      } else {
+        assertTrue(result.totalHits() >= Math.min(threshold, exact.totalHits()));
+      }
+    }
+
+    // Higher than the number of hits: always exact
+    var counted =
+        searcher.search(
+            builder.exactTotalHits(false).totalHitsThreshold(Util.expectedIndexSize()).build());
+    assertTrue(counted.exactTotalHits());
+    assertEquals(exact.totalHits(), counted.totalHits());
+  }
+
+  @Test
+  void precomputedFacetsMatchComputedOnes(@TempDir Path tmpDir) throws Exception {
+    var extractor =
+        new CategoryExtractor.Builder()
+            .addCategory("site", false, r -> Set.of(r.siteName()))
+            .build();
+    var indexer = Indexer.Factory.open(tmpDir, extractor);
+    var recipes = Util.getSampleRecipes().iterator();
+    for (int i = 0; i < 100; i++) {
+      indexer.addRecipe(recipes.next());
+    }
+    indexer.commit();
+
+    var vegetarian = new SearchQuery.Builder().diet("vegetarian").maxFacets(5).build();
+    var precomputing = new Searcher.Builder().dataDirectory(tmpDir).precomputeFacets(vegetarian);
+    var searcherWithPrecomputed = precomputing.build();
+
+    // Every recipe has a number of ingredients, so this matches the
+    // whole index, but it isn't precomputed
+    var everything =
+        new SearchQuery.Builder()
+            .fulltext("*")
+            .numIngredients(SearchQuery.RangedSpec.of(0, Integer.MAX_VALUE))
+            .maxFacets(5)
+            .build();
+    var matchAll = new SearchQuery.Builder().fulltext("*").maxFacets(5).build();
+
+    var expected = searcherWithPrecomputed.search(everything);
+    assertEquals(100, expected.totalHits());
+    assertEquals(expected.facets(), searcherWithPrecomputed.search(matchAll).facets());
+    assertEquals(expected.totalHits(), searcherWithPrecomputed.search(matchAll).totalHits());
+
+    // Precomputed hit counts are exact even when not asked to be
+    var inexact = new SearchQuery.Builder().from(matchAll).exactTotalHits(false).build();
+    assertEquals(100, searcherWithPrecomputed.search(inexact).totalHits());
+    assertTrue(searcherWithPrecomputed.search(inexact).exactTotalHits());
+
+    var reference = Searcher.Factory.open(tmpDir);
+    // Pagination and sorting don't matter
+    var sortedVegetarian =
+        new SearchQuery.Builder().from(vegetarian).sort(SortOrder.CALORIES).offset(2).build();
+    assertEquals(reference.search(vegetarian), searcherWithPrecomputed.search(vegetarian));
+    assertEquals(
+        reference.search(sortedVegetarian), searcherWithPrecomputed.search(sortedVegetarian));
+
+    // Counts follow the reader
+    for (int i = 0; i < 50; i++) {
+      indexer.addRecipe(recipes.next());
+    }
+    indexer.commit();
+    indexer.close();
+
+    searcherWithPrecomputed.maybeRefresh();
+    reference.maybeRefresh();
+
+    assertEquals(150, searcherWithPrecomputed.search(matchAll).totalHits());
+    assertEquals(
+        searcherWithPrecomputed.search(everything).facets(),
+        searcherWithPrecomputed.search(matchAll).facets());
+    assertEquals(reference.search(vegetarian), searcherWithPrecomputed.search(vegetarian));
+
+    reference.close();
+    searcherWithPrecomputed.close();
+  }
+
+  @Test
+  void builderRequiresDataDirectory() {
+    assertThrows(IllegalStateException.class, () -> new Searcher.Builder().build());
+    assertThrows(
+        IllegalStateException.class, () -> new Searcher.Builder().refreshInterval(Duration.ZERO));
+  }
+
+  @Test
+  void concurrentSearchMatchesSequentialSearch(@TempDir Path tmpDir) throws Exception {
+    var extractor =
+        new CategoryExtractor.Builder()
+            .addCategory("site", false, r -> Set.of(r.siteName()))
+            .build();
+    var indexer = Indexer.Factory.open(tmpDir, extractor);
+
+    // Commit often so that we end up with many segments
+    var numAdded = 0;
+    for (var recipe : (Iterable<Recipe>) Util.getSampleRecipes()::iterator) {
+      indexer.addRecipe(recipe);
+      if (++numAdded % 20 == 0) {
+        indexer.commit();
+      }
+    }
+    indexer.commit();
+    indexer.close();
+
+    try (var reader = DirectoryReader.open(FSDirectory.open(tmpDir.resolve("index")))) {
+      var numLeaves = reader.leaves().size();
+      assertTrue(numLeaves > 2);
+      assertEquals(
+          (numLeaves + 1) / 2, SearcherImpl.contiguousSlices(reader.leaves(), 1000, 2).length);
+      assertEquals(numLeaves, SearcherImpl.contiguousSlices(reader.leaves(), 1, 1000).length);
+    }
+
+    var executor = Executors.newFixedThreadPool(4);
+    var sequential = Searcher.Factory.open(tmpDir);
+    var concurrent =
+        new Searcher.Builder()
+            .dataDirectory(tmpDir)
+            .executor(executor)
+            .slicing(30, 2)
+            .concurrentSearchThreshold(0)
+            .build();
+
+    for (SortOrder sortOrder : SortOrder.values()) {
+      var builder =
+          new SearchQuery.Builder().fulltext("salt").sort(sortOrder).maxResults(15).maxFacets(5);
+
+      var expected = sequential.search(builder.build());
+      assertEquals(expected, concurrent.search(builder.build()));
+
+      var cursor = expected.nextCursor().orElseThrow();
+      assertEquals(
+          sequential.search(builder.cursor(cursor).build()),
+          concurrent.search(builder.cursor(cursor).build()));
+    }
+
+    concurrent.close();
+    sequential.close();
+    executor.shutdown();
+  }
+
   @Test
   void basicSorting() {
     var queryBuilder =
@@ -154,6 +774,50 @@ class SearcherTest {
         queryBuilder.sort(SortOrder.TOTAL_TIME).build(), r -> Util.getRecipe(r).totalTime());
 
     checkOrdering(queryBuilder.sort(SortOrder.CALORIES).build(), r -> Util.getRecipe(r).calories());
+
+    checkFloatOrdering(
+        queryBuilder.sort(SortOrder.FAT_CONTENT).build(), r -> Util.getRecipe(r).fatContent());
+
+    checkFloatOrdering(
+        queryBuilder.sort(SortOrder.PROTEIN_CONTENT).build(),
+        r -> Util.getRecipe(r).proteinContent());
+
+    checkFloatOrdering(
+        queryBuilder.sort(SortOrder.CARBOHYDRATE_CONTENT).build(),
+        r -> Util.getRecipe(r).carbohydrateContent());
+  }
+
+  private void checkFloatOrdering(SearchQuery query, Function<Long, OptionalDouble> retriever) {
+    var hits = searcher.search(query);
+    var lastValue = Float.NEGATIVE_INFINITY;
+    for (long r : hits.recipeIds()) {
+      final var value = (float) retriever.apply(r).orElse(Float.MAX_VALUE);
+      assertTrue(lastValue <= value);
+      lastValue = value;
+    }
+  }
+
+  @Test
+  void pointsAndDocValuesMatchTheSameDocuments() throws Exception {
+    var queries =
+        List.of(
+            SearcherImpl.intRangeQuery(IndexField.TOTAL_TIME, 10, 30),
+            SearcherImpl.intRangeQuery(IndexField.NUM_INGREDIENTS, 0, 5),
+            SearcherImpl.floatRangeQuery(IndexField.FAT_CONTENT, 0, 10),
+            SearcherImpl.floatRangeQuery(IndexField.PROTEIN_CONTENT, 5, 20),
+            SearcherImpl.floatRangeQuery(IndexField.CARBOHYDRATE_CONTENT, 10, 40),
+            SearcherImpl.floatRangeQuery(
+                IndexField.getFieldNameForDiet("keto"), 0.8F, Float.MAX_VALUE));
+
+    try (var reader =
+        DirectoryReader.open(FSDirectory.open(Util.getTestDataDir().resolve("index")))) {
+      var indexSearcher = new IndexSearcher(reader);
+      for (var query : queries) {
+        var expected = indexSearcher.count(query.getIndexQuery());
+        assertTrue(expected > 0);
+        assertEquals(expected, indexSearcher.count(query.getRandomAccessQuery()));
+      }
+    }
   }
 
   private void checkOrdering(SearchQuery query, Function<Long, OptionalInt> retriever) {
@@ -257,6 +921,49 @@ class SearcherTest {
     }
   }
 
+  @Test
+  void cursorPaginationMatchesOffsetPagination() {
+    for (SortOrder sortOrder : SortOrder.values()) {
+      var builder = new SearchQuery.Builder().fulltext("salt").sort(sortOrder);
+
+      var expected = searcher.search(builder.maxResults(60).build());
+      assert expected.totalHits() > 60;
+
+      var walked = new ArrayList<Long>();
+      var result = searcher.search(builder.maxResults(7).build());
+
+      while (walked.size() < 60) {
+        assertEquals(expected.totalHits(), result.totalHits());
+        walked.addAll(result.recipeIds());
+        result = searcher.search(builder.cursor(result.nextCursor().orElseThrow()).build());
+      }
+
+      assertEquals(expected.recipeIds(), walked.subList(0, 60));
+    }
+  }
+
+  @Test
+  void lastPageHasNoCursor() {
+    var builder = new SearchQuery.Builder().fulltext("sweet potato");
+    var totalHits = (int) searcher.search(builder.build()).totalHits();
+
+    var lastPage = searcher.search(builder.maxResults(totalHits + 1).build());
+    assertEquals(totalHits, lastPage.recipeIds().size());
+    assertTrue(lastPage.nextCursor().isEmpty());
+  }
+
+  @Test
+  void invalidCursorsAreRejected() {
+    var builder = new SearchQuery.Builder().fulltext("salt");
+    var cursor = searcher.search(builder.build()).nextCursor().orElseThrow();
+
+    assertThrows(
+        IllegalStateException.class, () -> searcher.search(builder.cursor("not a cursor").build()));
+    assertThrows(
+        IllegalStateException.class,
+        () -> searcher.search(builder.cursor(cursor).sort(SortOrder.CALORIES).build()));
+  }
+
   @Test
   void policyInspectLuceneQueryIsAlwaysCalled() {
     var policyMock = mock(SearchPolicy.class);
@@ -270,6 +977,29 @@ class SearcherTest {
     verify(policyMock).rewriteParsedFulltextQuery(any());
   }
 
+  @Test
+  void policyAppliesToPrecomputedQueries() {
+    var policyMock = mock(SearchPolicy.class);
+
+    given(policyMock.rewriteParsedFulltextQuery(any())).willReturn(new MatchAllDocsQuery());
+    given(policyMock.shouldComputeFacets(anyInt())).willReturn(true);
+
+    var salt = new SearchQuery.Builder().fulltext("salt").maxFacets(5).build();
+    var searcherWithPolicy =
+        new Searcher.Builder()
+            .dataDirectory(Util.getTestDataDir())
+            .searchPolicy(policyMock)
+            .precomputeFacets(salt)
+            .build();
+    verify(policyMock).rewriteParsedFulltextQuery(any());
+
+    var result = searcherWithPolicy.search(salt);
+    assertEquals(Util.expectedIndexSize(), result.totalHits());
+    assertFalse(result.facets().isEmpty());
+
+    searcherWithPolicy.close();
+  }
+
   @Test
   void policyShouldComputeFacetsIsOnlyCalledWhenRelevant() {
     var policyMock = mock(SearchPolicy.class);
@@ -344,6 +1074,45 @@ class SearcherTest {
     assertTrue(searcherWithPolicy.search(queryWithFacets).facets().isEmpty());
   }
 
+  @Test
+  void facetSamplingApproximatesCounts() {
+    var policyMock = mock(SearchPolicy.class);
+    given(policyMock.rewriteParsedFulltextQuery(any())).willAnswer(inv -> inv.getArgument(0));
+    given(policyMock.shouldComputeFacets(anyInt())).willReturn(true);
+
+    var searcherWithPolicy = Searcher.Factory.open(Util.getTestDataDir(), policyMock);
+    var query = new SearchQuery.Builder().fulltext("salt").maxFacets(10).build();
+
+    var exact = searcherWithPolicy.search(query);
+    assertFalse(exact.facets().isEmpty());
+    exact.facets().values().forEach(fd -> assertFalse(fd.approximate()));
+
+    assertTrue(exact.totalHits() > 10);
+    given(policyMock.facetSampleSize()).willReturn((int) exact.totalHits() / 4);
+    var sampled = searcherWithPolicy.search(query);
+
+    assertEquals(exact.totalHits(), sampled.totalHits());
+    assertEquals(exact.recipeIds(), sampled.recipeIds());
+    assertEquals(exact.facets().keySet(), sampled.facets().keySet());
+
+    for (var facetData : sampled.facets().values()) {
+      assertTrue(facetData.approximate());
+      // Extrapolated counts are capped to the number of recipes in
+      // the index with the label
+      facetData
+          .children()
+          .values()
+          .forEach(count -> assertTrue(count > 0 && count <= Util.expectedIndexSize()));
+    }
+
+    // Same seed, same sample
+    assertEquals(sampled, searcherWithPolicy.search(query));
+
+    // Samples as big as the number of hits are just exact counts
+    given(policyMock.facetSampleSize()).willReturn(Util.expectedIndexSize());
+    assertEquals(exact, searcherWithPolicy.search(query));
+  }
+
   @Test
   void similaritySearch() {
 
@@ -383,6 +1152,39 @@ class SearcherTest {
             String.join("\n", testRecipe.instructions())));
   }
 
+  @Test
+  void findSimilarByIdUsesTermVectors(@TempDir Path tmpDir) throws Exception {
+    assertThrows(IllegalStateException.class, () -> searcher.findSimilar(1L, 10));
+
+    var indexer =
+        Indexer.Factory.open(
+            tmpDir, CategoryExtractor.NOOP, SortOrder.RELEVANCE, Indexer.FacetsMode.TAXONOMY, true);
+    Util.getSampleRecipes().forEach(r -> assertDoesNotThrow(() -> indexer.addRecipe(r)));
+    indexer.close();
+
+    assertThrows(
+        Indexer.IndexerException.class, () -> Indexer.Factory.open(tmpDir, CategoryExtractor.NOOP));
+
+    var withVectors = Searcher.Factory.open(tmpDir);
+    assertEquals(0, withVectors.findSimilar(-1L, 10).totalHits());
+
+    Util.getSampleRecipes()
+        .forEach(
+            testRecipe -> {
+              var byId = withVectors.findSimilar(testRecipe.recipeId(), 10);
+              var byText =
+                  withVectors.findSimilar(recipeText(testRecipe), 11).recipeIds().stream()
+                      .filter(id -> id != testRecipe.recipeId())
+                      .limit(10)
+                      .collect(Collectors.toList());
+
+              assertFalse(byId.recipeIds().contains(testRecipe.recipeId()));
+              assertEquals(byText, byId.recipeIds());
+            });
+
+    withVectors.close();
+  }
+
   @Test
   void rewriteParsedSimilarityQuery() {
     var policyMock = mock(SearchPolicy.class);
@@ -401,6 +1203,142 @@ class SearcherTest {
     assertEquals(0, searcherWithPolicy.findSimilar(text, 10).totalHits());
   }
 
+  @Test
+  void similarityBudgetsBoundTheQuery() throws Exception {
+    var text = recipeText(Util.getSampleRecipes().skip(10).findFirst().get());
+
+    var budgeted =
+        (SearcherImpl)
+            new Searcher.Builder()
+                .dataDirectory(Util.getTestDataDir())
+                .similarityMaxQueryTerms(3)
+                .build();
+
+    try (var reader =
+        DirectoryReader.open(FSDirectory.open(Util.getTestDataDir().resolve("index")))) {
+      var unbounded = (BooleanQuery) ((SearcherImpl) searcher).parseSimilarity(text, reader);
+      assertTrue(unbounded.clauses().size() > 3);
+      assertEquals(3, ((BooleanQuery) budgeted.parseSimilarity(text, reader)).clauses().size());
+    }
+
+    var nothingIsRareEnough =
+        new Searcher.Builder()
+            .dataDirectory(Util.getTestDataDir())
+            .similarityMinDocFreq(Util.expectedIndexSize() + 1)
+            .build();
+    assertEquals(0, nothingIsRareEnough.findSimilar(text, 10).totalHits());
+
+    budgeted.close();
+    nothingIsRareEnough.close();
+
+    assertThrows(
+        IllegalStateException.class, () -> new Searcher.Builder().similarityMaxQueryTerms(0));
+    assertThrows(
+        IllegalStateException.class, () -> new Searcher.Builder().similarityMaxTokensParsed(0));
+    assertThrows(
+        IllegalStateException.class,
+        () -> new Searcher.Builder().similarityTimeout(Duration.ofNanos(10)));
+  }
+
+  @Test
+  void similarityTimeoutTruncatesResults() {
+    var policyMock = mock(SearchPolicy.class);
+    // Scoring every recipe would take over a second
+    given(policyMock.rewriteParsedSimilarityQuery(any()))
+        .willReturn(new FunctionScoreQuery(new MatchAllDocsQuery(), new SlowValuesSource()));
+
+    var limited =
+        new Searcher.Builder()
+            .dataDirectory(Util.getTestDataDir())
+            .searchPolicy(policyMock)
+            .similarityTimeout(Duration.ofMillis(50))
+            .build();
+
+    var result = limited.findSimilar("whatever", 10);
+    assertFalse(result.exactTotalHits());
+    assertTrue(result.totalHits() < Util.expectedIndexSize());
+    assertFalse(result.recipeIds().isEmpty());
+
+    limited.close();
+  }
+
+  @Test
+  void similarResultsTellWhenCountsAreInexact(@TempDir Path tmpDir) throws Exception {
+    // More recipes than a search counts by default
+    var indexer = Indexer.Factory.open(tmpDir, CategoryExtractor.NOOP);
+    for (int i = 0; i < 4; i++) {
+      Util.getSampleRecipes().forEach(r -> assertDoesNotThrow(() -> indexer.addRecipe(r)));
+    }
+    indexer.close();
+
+    var policyMock = mock(SearchPolicy.class);
+    given(policyMock.rewriteParsedSimilarityQuery(any())).willReturn(new MatchAllDocsQuery());
+    var everything = Searcher.Factory.open(tmpDir, policyMock);
+
+    var result = everything.findSimilar("whatever", 10);
+    assertFalse(result.exactTotalHits());
+    assertTrue(result.totalHits() < Util.expectedIndexSize() * 4);
+    assertEquals(10, result.recipeIds().size());
+
+    // Counted in full when there's little to count
+    var exact = searcher.findSimilar(recipeText(Util.getSampleRecipes().findFirst().get()), 10);
+    assertTrue(exact.exactTotalHits());
+
+    everything.close();
+  }
+
+  private static class SlowValuesSource extends DoubleValuesSource {
+    @Override
+    public DoubleValues getValues(LeafReaderContext ctx, DoubleValues scores) {
+      return new DoubleValues() {
+        @Override
+        public double doubleValue() {
+          try {
+            Thread.sleep(5);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return 1;
+        }
+
+        @Override
+        public boolean advanceExact(int doc) {
+          return true;
+        }
+      };
+    }
+
+    @Override
+    public boolean needsScores() {
+      return false;
+    }
+
+    @Override
+    public DoubleValuesSource rewrite(IndexSearcher reader) {
+      return this;
+    }
+
+    @Override
+    public boolean isCacheable(LeafReaderContext ctx) {
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return 0;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj == this;
+    }
+
+    @Override
+    public String toString() {
+      return "slow";
+    }
+  }
+
   @Test
   void emptySearchQueryYieldsEmptyResults() {
     assertEquals(0, searcher.search(new SearchQuery.Builder().build()).totalHits());
@@ -0,0 +1,126 @@
+package co.caio.cerberus.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import co.caio.cerberus.Util;
+import co.caio.cerberus.search.Suggester.SuggesterException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SuggesterTest {
+
+  private static Suggester suggester;
+
+  @BeforeAll
+  static void prepare(@TempDir Path tmpDir) throws Exception {
+    Indexer.Factory.open(tmpDir, CategoryExtractor.NOOP).close();
+
+    var writer = new Suggester.Writer(tmpDir);
+    Util.getSampleRecipes().forEach(writer::addRecipe);
+    writer.close();
+
+    suggester = Suggester.Factory.open(tmpDir);
+  }
+
+  @Test
+  void normalizeIngredient() {
+    assertEquals("egg yolks", SuggesterImpl.normalizeIngredient("12 egg yolks"));
+    assertEquals("lemon juice", SuggesterImpl.normalizeIngredient("\u00bc cup lemon juice"));
+    assertEquals("almonds", SuggesterImpl.normalizeIngredient("1\u00bd cups almonds"));
+    assertEquals("garlic", SuggesterImpl.normalizeIngredient("2 cloves garlic, finely chopped"));
+    assertEquals(
+        "frozen spinach",
+        SuggesterImpl.normalizeIngredient(
+            "2 cups frozen spinach (from two 10-ounce packages), thawed and squeezed dry"));
+    assertEquals("flour", SuggesterImpl.normalizeIngredient("1 cup of  Flour"));
+    assertEquals("", SuggesterImpl.normalizeIngredient("2 tablespoons"));
+  }
+
+  @Test
+  void suggestsNamesAndIngredientsByPrefix() {
+    var recipe = Util.getSampleRecipes().findFirst().orElseThrow();
+    var name = SuggesterImpl.normalizeName(recipe.name());
+
+    assertTrue(suggester.suggest(name.substring(0, name.length() - 1), 10).contains(name));
+    assertTrue(suggester.suggest(name.toUpperCase(), 10).contains(name));
+
+    var garlic = suggester.suggest("garl", 5);
+    assertFalse(garlic.isEmpty());
+    garlic.forEach(s -> assertTrue(s.startsWith("garl")));
+
+    assertTrue(suggester.suggest("   ", 5).isEmpty());
+    assertTrue(suggester.suggest("zzzzzz", 5).isEmpty());
+    assertThrows(IllegalStateException.class, () -> suggester.suggest("garl", 0));
+  }
+
+  @Test
+  void matchesTheStartOfSuggestions(@TempDir Path tmpDir) throws Exception {
+    // Not the one given to prepare()
+    var dir = tmpDir.resolve("prefix");
+    Indexer.Factory.open(dir, CategoryExtractor.NOOP).close();
+    SuggesterImpl.write(
+        IndexConfiguration.fromBaseDirectory(dir), Map.of("spinach-bacon frittata", 1L));
+    var prefixSuggester = Suggester.Factory.open(dir);
+
+    assertEquals(List.of("spinach-bacon frittata"), prefixSuggester.suggest("spinach bac", 5));
+    assertEquals(List.of("spinach-bacon frittata"), prefixSuggester.suggest("Spinach-B", 5));
+    assertTrue(prefixSuggester.suggest("bacon", 5).isEmpty());
+    assertTrue(prefixSuggester.suggest("frittata", 5).isEmpty());
+  }
+
+  @Test
+  void mostCommonFirst() {
+    var counts = new HashMap<String, Integer>();
+    Util.getSampleRecipes()
+        .forEach(
+            recipe ->
+                recipe.ingredients().stream()
+                    .map(SuggesterImpl::normalizeIngredient)
+                    .distinct()
+                    .forEach(i -> counts.merge(i, 1, Integer::sum)));
+
+    var suggestions = suggester.suggest("s", 10);
+    assertEquals(10, suggestions.size());
+    for (int i = 1; i < suggestions.size(); i++) {
+      assertTrue(
+          counts.getOrDefault(suggestions.get(i - 1), 0)
+              >= counts.getOrDefault(suggestions.get(i), 0));
+    }
+    assertEquals("salt", suggestions.get(0));
+  }
+
+  @Test
+  void rebuildingReplacesSuggestions(@TempDir Path tmpDir) throws Exception {
+    // Same as the one given to prepare()
+    var dir = tmpDir.resolve("rebuild");
+
+    assertThrows(SuggesterException.class, () -> new Suggester.Writer(dir));
+
+    Indexer.Factory.open(dir, CategoryExtractor.NOOP).close();
+    assertThrows(SuggesterException.class, () -> Suggester.Factory.open(dir));
+
+    var writer = new Suggester.Writer(dir);
+    Util.getSampleRecipes().limit(10).forEach(writer::addRecipe);
+    writer.close();
+    var first = Suggester.Factory.open(dir);
+
+    writer = new Suggester.Writer(dir);
+    Util.getSampleRecipes().forEach(writer::addRecipe);
+    writer.close();
+    var second = Suggester.Factory.open(dir);
+
+    assertTrue(second.ramBytesUsed() > first.ramBytesUsed());
+    assertTrue(suggester.ramBytesUsed() > 0);
+
+    // Nothing to suggest is still a valid suggester
+    new Suggester.Writer(dir).close();
+    var empty = Suggester.Factory.open(dir);
+    assertTrue(empty.suggest("salt", 5).isEmpty());
+    assertEquals(0, empty.ramBytesUsed());
+  }
+}